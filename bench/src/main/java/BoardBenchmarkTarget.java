@@ -0,0 +1,112 @@
+import bench.BoardTarget;
+
+import java.util.SplittableRandom;
+
+public class BoardBenchmarkTarget implements BoardTarget {
+    private static final double OCCUPANCY = 0.6;
+    private static final int MAX_EXPONENT = 11;
+
+    private Board[] positions;
+    private Board board;
+    private Board copy;
+    private Board.Snapshot snapshot;
+    private int touched;
+
+    @Override
+    public void setUp(int size, int count, long seed) {
+        SplittableRandom random = new SplittableRandom(seed);
+        positions = new Board[count];
+        for (int i = 0; i < count; i++) {
+            positions[i] = new Board(midGame(size, random));
+        }
+        board = new Board(new int[size][size]);
+        copy = new Board(new int[size][size]);
+        positions[0].copyTo(board);
+        snapshot = board.snapshot();
+    }
+
+    // roughly 60% occupied, small tiles much more common than large ones as in a real game
+    private static int[][] midGame(int size, SplittableRandom random) {
+        int[][] cells = new int[size][size];
+        for (int y = 0; y < size; y++) {
+            for (int x = 0; x < size; x++) {
+                if (random.nextDouble() < OCCUPANCY) {
+                    int exponent = 1 + Math.min(Integer.numberOfTrailingZeros(random.nextInt() | 1 << 31), MAX_EXPONENT - 1);
+                    cells[y][x] = 1 << exponent;
+                }
+            }
+        }
+        return cells;
+    }
+
+    @Override
+    public void restore(int position) {
+        positions[position].copyTo(board);
+    }
+
+    @Override
+    public void moveUp() {
+        board.moveUp();
+    }
+
+    @Override
+    public void moveDown() {
+        board.moveDown();
+    }
+
+    @Override
+    public void moveLeft() {
+        board.moveLeft();
+    }
+
+    @Override
+    public void moveRight() {
+        board.moveRight();
+    }
+
+    @Override
+    public void createRandomCell() {
+        board.createRandomCells(1);
+    }
+
+    @Override
+    public boolean hasMoreMoves() {
+        // hasMoreMoves alone is a cached answer while any cell is free, so write a different cell
+        // each call and ask for the legal moves: that rescans the row and column the write dirtied
+        int size = board.getSize();
+        int index = touched++ % (size * size);
+        int x = index % size;
+        int y = index / size;
+        int value = board.getValue(x, y);
+        board.setNumber(x, y, value == 0 ? 2 : 0);
+        boolean more = board.legalMoves() != 0 && board.hasMoreMoves();
+        board.setNumber(x, y, value);
+        return more;
+    }
+
+    @Override
+    public void copyTo() {
+        board.copyTo(copy);
+    }
+
+    @Override
+    public void copyFrom() {
+        copy.copyFrom(board);
+    }
+
+    @Override
+    public void snapshotRestore() {
+        board.snapshot(snapshot);
+        copy.restore(snapshot);
+    }
+
+    @Override
+    public String toFormattedString() {
+        return board.toString();
+    }
+
+    @Override
+    public String toStringWithoutFormatting() {
+        return board.toStringWithoutFormatting();
+    }
+}
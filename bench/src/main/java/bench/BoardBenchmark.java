@@ -0,0 +1,110 @@
+package bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+// Move and spawn benchmarks mutate the board, so each invocation first restores one of POSITIONS
+// precomputed mid-game positions; the restore benchmark measures that part on its own.
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BoardBenchmark {
+    private static final int POSITIONS = 64;
+
+    @Param({"4", "8", "16", "32", "64", "256", "512"})
+    public int size;
+
+    private BoardTarget target;
+    private int position;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        target = BoardTarget.create();
+        target.setUp(size, POSITIONS, 2048);
+    }
+
+    private void restoreNext() {
+        target.restore(position);
+        position = (position + 1) & (POSITIONS - 1);
+    }
+
+    @Benchmark
+    public void restore() {
+        restoreNext();
+    }
+
+    @Benchmark
+    public void moveUp() {
+        restoreNext();
+        target.moveUp();
+    }
+
+    @Benchmark
+    public void moveDown() {
+        restoreNext();
+        target.moveDown();
+    }
+
+    @Benchmark
+    public void moveLeft() {
+        restoreNext();
+        target.moveLeft();
+    }
+
+    @Benchmark
+    public void moveRight() {
+        restoreNext();
+        target.moveRight();
+    }
+
+    @Benchmark
+    public void createRandomCells() {
+        restoreNext();
+        target.createRandomCell();
+    }
+
+    @Benchmark
+    public boolean hasMoreMoves() {
+        return target.hasMoreMoves();
+    }
+
+    @Benchmark
+    public void copyTo() {
+        target.copyTo();
+    }
+
+    @Benchmark
+    public void copyFrom() {
+        target.copyFrom();
+    }
+
+    @Benchmark
+    public void snapshotRestore() {
+        target.snapshotRestore();
+    }
+
+    @Benchmark
+    public String toStringFormatted() {
+        return target.toFormattedString();
+    }
+
+    @Benchmark
+    public String toStringWithoutFormatting() {
+        return target.toStringWithoutFormatting();
+    }
+}
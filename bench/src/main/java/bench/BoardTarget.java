@@ -0,0 +1,38 @@
+package bench;
+
+// Board lives in the unnamed package, which JMH benchmarks can't import, so benchmarks drive it through this interface
+public interface BoardTarget {
+    void setUp(int size, int positions, long seed);
+
+    void restore(int position);
+
+    void moveUp();
+
+    void moveDown();
+
+    void moveLeft();
+
+    void moveRight();
+
+    void createRandomCell();
+
+    boolean hasMoreMoves();
+
+    void copyTo();
+
+    void copyFrom();
+
+    void snapshotRestore();
+
+    String toFormattedString();
+
+    String toStringWithoutFormatting();
+
+    static BoardTarget create() {
+        try {
+            return (BoardTarget) Class.forName("BoardBenchmarkTarget").getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package bench;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+// Compares two JMH CSV result files (-rf csv) on time per operation and bytes allocated per operation.
+// Exits with status 1 if any benchmark got slower or allocates more than the allowed percentage.
+public class CompareBaseline {
+    private static final String ALLOCATION_SUFFIX = ":gc.alloc.rate.norm";
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("Usage: CompareBaseline <baseline.csv> <current.csv> [allowed regression %]");
+            System.exit(2);
+        }
+        Map<String, Double> baseline = read(Path.of(args[0]));
+        Map<String, Double> current = read(Path.of(args[1]));
+        double allowed = args.length > 2 ? Double.parseDouble(args[2]) : 10.0;
+
+        boolean regressed = false;
+        System.out.printf("%-60s %14s %14s %9s%n", "Benchmark", "baseline", "current", "change");
+        for (var entry : current.entrySet()) {
+            Double before = baseline.get(entry.getKey());
+            if (before == null) {
+                System.out.printf("%-60s %14s %14.3f %9s%n", entry.getKey(), "-", entry.getValue(), "new");
+                continue;
+            }
+            double after = entry.getValue();
+            double change = before == 0 ? (after == 0 ? 0 : 100.0) : (after - before) * 100.0 / before;
+            boolean worse = change > allowed && after - before > 0.5;
+            regressed |= worse;
+            System.out.printf("%-60s %14.3f %14.3f %8.1f%%%s%n", entry.getKey(), before, after, change, worse ? " REGRESSION" : "");
+        }
+        System.exit(regressed ? 1 : 0);
+    }
+
+    // keys look like "moveLeft size=4 ns/op" and "moveLeft size=4 B/op"
+    private static Map<String, Double> read(Path path) throws IOException {
+        Map<String, Double> results = new LinkedHashMap<>();
+        List<String> lines = Files.readAllLines(path);
+        String[] header = split(lines.get(0));
+        for (String line : lines.subList(1, lines.size())) {
+            String[] columns = split(line);
+            String name = columns[0];
+            String unit = columns[6];
+            if (name.endsWith(ALLOCATION_SUFFIX)) {
+                name = name.substring(0, name.length() - ALLOCATION_SUFFIX.length());
+            } else if (name.contains(":") || !unit.endsWith("/op")) {
+                continue;
+            }
+            String benchmark = name.substring(name.lastIndexOf('.') + 1);
+            StringBuilder key = new StringBuilder(benchmark);
+            for (int i = 7; i < columns.length; i++) {
+                key.append(' ').append(header[i].replace("Param: ", "")).append('=').append(columns[i]);
+            }
+            key.append(' ').append(unit);
+            results.put(key.toString(), Double.parseDouble(columns[4]));
+        }
+        return results;
+    }
+
+    private static String[] split(String line) {
+        List<String> columns = new ArrayList<>();
+        for (String column : line.split(",", -1)) {
+            columns.add(column.startsWith("\"") ? column.substring(1, column.length() - 1) : column);
+        }
+        return columns.toArray(new String[0]);
+    }
+}
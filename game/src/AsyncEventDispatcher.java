@@ -0,0 +1,597 @@
+import java.awt.EventQueue;
+import java.util.Arrays;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+
+// Delivers the events of one board on another thread. Attached to a board, the dispatcher is its only
+// listener: each event is written as a record of primitives into a preallocated ring buffer, so the
+// move path does a few array stores and one ordered write per event and takes the same time however
+// slow the listeners are. A consumer reads the records in batches and calls the listeners registered
+// on the dispatcher, either on its own thread (start()) or through an Executor such as the event
+// dispatch thread (startOnEventDispatchThread()). With its own thread the move path never allocates;
+// through an Executor it submits one task per batch, and whatever the executor allocates for it
+// (invokeLater creates an InvocationEvent) is paid once per batch, not per event.
+//
+// There is a single producer, the thread that moves the board. A full buffer is backpressure: the
+// producer waits, using the wait strategy, until the consumer has freed a slot, so no event is ever
+// dropped. When the producer is the consumer thread itself (moves made on the EDT while the EDT
+// consumes) it delivers the pending events in place instead of waiting for itself.
+//
+// A MoveListener receives a MoveResult rebuilt on the consumer side, so the board's own instance is
+// never shared between threads. Listeners may be added before or after attach(); the board only
+// records the kinds of events the dispatcher has listeners for.
+public final class AsyncEventDispatcher implements BoardEvents, AutoCloseable {
+    public static final int DEFAULT_CAPACITY = 1 << 14;
+
+    // how a thread waits for the other side: the producer on a full buffer, the consumer on an empty one
+    public enum WaitStrategy {
+        // lowest latency, burns a core while idle; needs a core each for producer and consumer
+        SPIN,
+        YIELD,
+        // parks for PARK_NANOS at a time; adds up to that much latency, costs nothing while idle
+        PARK
+    }
+
+    private static final int RECORD_SIZE = 8;
+    private static final long PARK_NANOS = 100_000;
+
+    private static final int CREATED = 0;
+    private static final int MOVED = 1;
+    private static final int MERGED_FROM = 2;
+    private static final int MERGED_TO = 3;
+    private static final int GAME_OVER = 4;
+    private static final int WIN = 5;
+    private static final int RESTORED = 6;
+    // (direction, score delta, record count), followed by that many MOVE_RECORDs
+    private static final int MOVE_STARTED = 7;
+    private static final int MOVE_RECORD = 8;
+
+    private final int[] ring;
+    private final int mask;
+    private final WaitStrategy waitStrategy;
+    // records published by the producer and consumed by the consumer, as running counts
+    private final AtomicLong published = new AtomicLong();
+    private final AtomicLong consumed = new AtomicLong();
+    private final AtomicReference<Throwable> failure = new AtomicReference<>();
+    // producer side
+    private long head;
+    private long cachedConsumed;
+    private volatile long stalls;
+    private Board board;
+    // consumer side
+    private long tail;
+    private int pendingMoveRecords;
+    private final MoveResult moveResult = new MoveResult();
+    private volatile Thread consumerThread;
+    private volatile boolean running;
+    private volatile Executor executor;
+    private volatile boolean onEventDispatchThread;
+    private final AtomicBoolean scheduled = new AtomicBoolean();
+    private final Runnable drainTask = this::drainScheduled;
+
+    private volatile Board.CellCreatedListener[] cellCreatedListeners = new Board.CellCreatedListener[0];
+    private volatile Board.CellMovedListener[] cellMovedListeners = new Board.CellMovedListener[0];
+    private volatile Board.CellMergedFromListener[] cellMergedFromListeners = new Board.CellMergedFromListener[0];
+    private volatile Board.CellMergedToListener[] cellMergedToListeners = new Board.CellMergedToListener[0];
+    private volatile Board.GameOverListener[] gameOverListeners = new Board.GameOverListener[0];
+    private volatile Board.WinListener[] winListeners = new Board.WinListener[0];
+    private volatile Board.MoveListener[] moveListeners = new Board.MoveListener[0];
+    private volatile Board.CellRestoredListener[] cellRestoredListeners = new Board.CellRestoredListener[0];
+
+    // the listeners the dispatcher registers on the board, one per kind of event
+    private final Board.CellCreatedListener onCellCreated = (x, y, value) -> publish(CREATED, x, y, value, 0, 0, 0);
+    private final Board.CellMovedListener onCellMoved = (fromX, fromY, toX, toY) -> publish(MOVED, fromX, fromY, toX, toY, 0, 0);
+    private final Board.CellMergedFromListener onCellMergedFrom =
+            (fromX, fromY, toX, toY, mergedValue) -> publish(MERGED_FROM, fromX, fromY, toX, toY, mergedValue, 0);
+    private final Board.CellMergedToListener onCellMergedTo = (toX, toY, fromX, fromY) -> publish(MERGED_TO, toX, toY, fromX, fromY, 0, 0);
+    private final Board.GameOverListener onGameOver = () -> publish(GAME_OVER, 0, 0, 0, 0, 0, 0);
+    private final Board.WinListener onWin = () -> publish(WIN, 0, 0, 0, 0, 0, 0);
+    private final Board.MoveListener onMove = this::publishMove;
+    private final Board.CellRestoredListener onCellRestored = (x, y, value) -> publish(RESTORED, x, y, value, 0, 0, 0);
+
+    public AsyncEventDispatcher() {
+        this(DEFAULT_CAPACITY, WaitStrategy.PARK);
+    }
+
+    // capacity is in events and rounded up to a power of two
+    public AsyncEventDispatcher(int capacity, WaitStrategy waitStrategy) {
+        if (capacity < 1 || capacity > 1 << 24) {
+            throw new IllegalArgumentException("Capacity must be 1 to 2^24 events: " + capacity);
+        }
+        int slots = capacity == 1 ? 1 : Integer.highestOneBit(capacity - 1) << 1;
+        ring = new int[slots * RECORD_SIZE];
+        mask = slots - 1;
+        this.waitStrategy = waitStrategy;
+    }
+
+    // makes this dispatcher the board's listener for every kind of event that has listeners here
+    public void attach(Board board) {
+        if (this.board != null) {
+            throw new IllegalStateException("Already attached to a board");
+        }
+        this.board = board;
+        register(true);
+    }
+
+    public void detach() {
+        if (board != null) {
+            register(false);
+            board = null;
+        }
+    }
+
+    private void register(boolean add) {
+        if (cellCreatedListeners.length != 0) {
+            if (add) board.addCellCreatedListener(onCellCreated); else board.removeCellCreatedListener(onCellCreated);
+        }
+        if (cellMovedListeners.length != 0) {
+            if (add) board.addCellMovedListener(onCellMoved); else board.removeCellMovedListener(onCellMoved);
+        }
+        if (cellMergedFromListeners.length != 0) {
+            if (add) board.addCellMergedFromListener(onCellMergedFrom); else board.removeCellMergedFromListener(onCellMergedFrom);
+        }
+        if (cellMergedToListeners.length != 0) {
+            if (add) board.addCellMergedToListener(onCellMergedTo); else board.removeCellMergedToListener(onCellMergedTo);
+        }
+        if (gameOverListeners.length != 0) {
+            if (add) board.addGameOverListener(onGameOver); else board.removeGameOverListener(onGameOver);
+        }
+        if (winListeners.length != 0) {
+            if (add) board.addWinListener(onWin); else board.removeWinListener(onWin);
+        }
+        if (moveListeners.length != 0) {
+            if (add) board.addMoveListener(onMove); else board.removeMoveListener(onMove);
+        }
+        if (cellRestoredListeners.length != 0) {
+            if (add) board.addCellRestoredListener(onCellRestored); else board.removeCellRestoredListener(onCellRestored);
+        }
+    }
+
+    // consumes on a new daemon thread
+    public void start() {
+        checkNotStarted();
+        running = true;
+        Thread thread = new Thread(this::consume, "board-events");
+        thread.setDaemon(true);
+        consumerThread = thread;
+        thread.start();
+    }
+
+    // consumes in tasks submitted to the executor, one task at a time, whenever events are pending. The
+    // producer must not run on the executor's threads: a full buffer would wait for a task that can't run
+    public void start(Executor executor) {
+        checkNotStarted();
+        running = true;
+        this.executor = executor;
+    }
+
+    // for listeners that touch Swing state
+    public void startOnEventDispatchThread() {
+        onEventDispatchThread = true;
+        start(EventQueue::invokeLater);
+    }
+
+    private void checkNotStarted() {
+        if (running) {
+            throw new IllegalStateException("Already started");
+        }
+    }
+
+    // waits until every event published so far has been delivered, and rethrows a listener's failure
+    public void awaitDelivered() {
+        for (int n = 0; consumed.getAcquire() < published.getAcquire(); n++) {
+            checkFailure();
+            if (isConsumerThread()) {
+                drain();
+            } else {
+                idle(n);
+            }
+        }
+        checkFailure();
+    }
+
+    // detaches from the board, delivers the pending events and stops the consumer
+    @Override
+    public void close() {
+        detach();
+        if (running) {
+            awaitDelivered();
+            running = false;
+            Thread thread = consumerThread;
+            if (executor == null && thread != null && thread != Thread.currentThread()) {
+                LockSupport.unpark(thread);
+                try {
+                    thread.join();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+    }
+
+    public int getCapacity() {
+        return mask + 1;
+    }
+
+    // events published but not yet delivered
+    public long getPending() {
+        return published.get() - consumed.get();
+    }
+
+    public long getDelivered() {
+        return consumed.get();
+    }
+
+    // how many times the producer found the buffer full and had to wait
+    public long getStalls() {
+        return stalls;
+    }
+
+    private void publishMove(MoveResult result) {
+        publish(MOVE_STARTED, result.getDirection(), result.getScoreDelta(), result.getCount(), 0, 0, 0);
+        for (int i = 0; i < result.getCount(); i++) {
+            publish(MOVE_RECORD, result.getType(i), result.getFromX(i), result.getFromY(i),
+                    result.getToX(i), result.getToY(i), result.getValue(i));
+        }
+    }
+
+    private void publish(int type, int a, int b, int c, int d, int e, int f) {
+        if (head - cachedConsumed > mask) {
+            awaitSpace();
+        }
+        int offset = (int) (head & mask) * RECORD_SIZE;
+        ring[offset] = type;
+        ring[offset + 1] = a;
+        ring[offset + 2] = b;
+        ring[offset + 3] = c;
+        ring[offset + 4] = d;
+        ring[offset + 5] = e;
+        ring[offset + 6] = f;
+        published.setRelease(++head);
+        Executor executor = this.executor;
+        if (executor != null && !scheduled.get() && scheduled.compareAndSet(false, true)) {
+            executor.execute(drainTask);
+        }
+    }
+
+    private void awaitSpace() {
+        stalls++;
+        for (int n = 0; head - (cachedConsumed = consumed.getAcquire()) > mask; n++) {
+            checkFailure();
+            if (!running) {
+                throw new IllegalStateException("Event buffer is full and no consumer is running");
+            }
+            if (isConsumerThread()) {
+                drain();
+            } else {
+                idle(n);
+            }
+        }
+    }
+
+    private boolean isConsumerThread() {
+        return onEventDispatchThread ? EventQueue.isDispatchThread() : Thread.currentThread() == consumerThread;
+    }
+
+    private void checkFailure() {
+        Throwable t = failure.get();
+        if (t != null) {
+            throw new IllegalStateException("Board event listener failed", t);
+        }
+    }
+
+    private void idle(int n) {
+        switch (waitStrategy) {
+            case SPIN -> Thread.onSpinWait();
+            case YIELD -> Thread.yield();
+            case PARK -> {
+                // a short spin first: the other side is often just about to catch up
+                if (n < 64) {
+                    Thread.onSpinWait();
+                } else {
+                    LockSupport.parkNanos(PARK_NANOS);
+                }
+            }
+        }
+    }
+
+    private void consume() {
+        try {
+            for (int n = 0; running || consumed.get() < published.get(); ) {
+                n = drain() == 0 ? n + 1 : 0;
+                if (n > 0) {
+                    idle(n);
+                }
+            }
+        } catch (Throwable t) {
+            failure.compareAndSet(null, t);
+        }
+    }
+
+    private void drainScheduled() {
+        consumerThread = Thread.currentThread();
+        try {
+            drain();
+        } catch (Throwable t) {
+            failure.compareAndSet(null, t);
+            return;
+        } finally {
+            consumerThread = null;
+            scheduled.set(false);
+        }
+        // an event published after drain() looked but before the flag was cleared has no task yet
+        if (published.getAcquire() > tail && scheduled.compareAndSet(false, true)) {
+            executor.execute(drainTask);
+        }
+    }
+
+    // delivers every published event; the slot is only released once its listeners have returned
+    private int drain() {
+        long available = published.getAcquire();
+        int count = 0;
+        while (tail < available) {
+            int offset = (int) (tail & mask) * RECORD_SIZE;
+            // advanced first, so a listener that moves the board and drains in place skips this record
+            tail++;
+            dispatch(offset);
+            consumed.setRelease(tail);
+            count++;
+        }
+        return count;
+    }
+
+    private void dispatch(int offset) {
+        int a = ring[offset + 1], b = ring[offset + 2], c = ring[offset + 3];
+        int d = ring[offset + 4], e = ring[offset + 5], f = ring[offset + 6];
+        switch (ring[offset]) {
+            case CREATED -> {
+                for (var listener : cellCreatedListeners) {
+                    listener.cellCreated(a, b, c);
+                }
+            }
+            case MOVED -> {
+                for (var listener : cellMovedListeners) {
+                    listener.cellMoved(a, b, c, d);
+                }
+            }
+            case MERGED_FROM -> {
+                for (var listener : cellMergedFromListeners) {
+                    listener.cellMergedFrom(a, b, c, d, e);
+                }
+            }
+            case MERGED_TO -> {
+                for (var listener : cellMergedToListeners) {
+                    listener.cellMergedTo(a, b, c, d);
+                }
+            }
+            case GAME_OVER -> {
+                for (var listener : gameOverListeners) {
+                    listener.gameOver();
+                }
+            }
+            case WIN -> {
+                for (var listener : winListeners) {
+                    listener.win();
+                }
+            }
+            case RESTORED -> {
+                for (var listener : cellRestoredListeners) {
+                    listener.cellRestored(a, b, c);
+                }
+            }
+            case MOVE_STARTED -> {
+                moveResult.clear(a);
+                moveResult.addScore(b);
+                pendingMoveRecords = c;
+                if (c == 0) {
+                    fireMove();
+                }
+            }
+            case MOVE_RECORD -> {
+                moveResult.add(a, b, c, d, e, f);
+                if (--pendingMoveRecords == 0) {
+                    fireMove();
+                }
+            }
+            default -> throw new IllegalStateException("Corrupt event record: " + ring[offset]);
+        }
+    }
+
+    private void fireMove() {
+        for (var listener : moveListeners) {
+            listener.moveCompleted(moveResult);
+        }
+    }
+
+    @Override
+    public void addCellCreatedListener(Board.CellCreatedListener listener) {
+        cellCreatedListeners = Board.append(cellCreatedListeners, listener);
+        if (board != null && cellCreatedListeners.length == 1) {
+            board.addCellCreatedListener(onCellCreated);
+        }
+    }
+
+    @Override
+    public void addCellMovedListener(Board.CellMovedListener listener) {
+        cellMovedListeners = Board.append(cellMovedListeners, listener);
+        if (board != null && cellMovedListeners.length == 1) {
+            board.addCellMovedListener(onCellMoved);
+        }
+    }
+
+    @Override
+    public void addCellMergedFromListener(Board.CellMergedFromListener listener) {
+        cellMergedFromListeners = Board.append(cellMergedFromListeners, listener);
+        if (board != null && cellMergedFromListeners.length == 1) {
+            board.addCellMergedFromListener(onCellMergedFrom);
+        }
+    }
+
+    @Override
+    public void addCellMergedToListener(Board.CellMergedToListener listener) {
+        cellMergedToListeners = Board.append(cellMergedToListeners, listener);
+        if (board != null && cellMergedToListeners.length == 1) {
+            board.addCellMergedToListener(onCellMergedTo);
+        }
+    }
+
+    @Override
+    public void addGameOverListener(Board.GameOverListener listener) {
+        gameOverListeners = Board.append(gameOverListeners, listener);
+        if (board != null && gameOverListeners.length == 1) {
+            board.addGameOverListener(onGameOver);
+        }
+    }
+
+    @Override
+    public void addWinListener(Board.WinListener listener) {
+        winListeners = Board.append(winListeners, listener);
+        if (board != null && winListeners.length == 1) {
+            board.addWinListener(onWin);
+        }
+    }
+
+    @Override
+    public void addMoveListener(Board.MoveListener listener) {
+        moveListeners = Board.append(moveListeners, listener);
+        if (board != null && moveListeners.length == 1) {
+            board.addMoveListener(onMove);
+        }
+    }
+
+    @Override
+    public void addCellRestoredListener(Board.CellRestoredListener listener) {
+        cellRestoredListeners = Board.append(cellRestoredListeners, listener);
+        if (board != null && cellRestoredListeners.length == 1) {
+            board.addCellRestoredListener(onCellRestored);
+        }
+    }
+
+    @Override
+    public void removeCellCreatedListener(Board.CellCreatedListener listener) {
+        cellCreatedListeners = Board.remove(cellCreatedListeners, listener);
+        if (board != null && cellCreatedListeners.length == 0) {
+            board.removeCellCreatedListener(onCellCreated);
+        }
+    }
+
+    @Override
+    public void removeCellMovedListener(Board.CellMovedListener listener) {
+        cellMovedListeners = Board.remove(cellMovedListeners, listener);
+        if (board != null && cellMovedListeners.length == 0) {
+            board.removeCellMovedListener(onCellMoved);
+        }
+    }
+
+    @Override
+    public void removeCellMergedFromListener(Board.CellMergedFromListener listener) {
+        cellMergedFromListeners = Board.remove(cellMergedFromListeners, listener);
+        if (board != null && cellMergedFromListeners.length == 0) {
+            board.removeCellMergedFromListener(onCellMergedFrom);
+        }
+    }
+
+    @Override
+    public void removeCellMergedToListener(Board.CellMergedToListener listener) {
+        cellMergedToListeners = Board.remove(cellMergedToListeners, listener);
+        if (board != null && cellMergedToListeners.length == 0) {
+            board.removeCellMergedToListener(onCellMergedTo);
+        }
+    }
+
+    @Override
+    public void removeGameOverListener(Board.GameOverListener listener) {
+        gameOverListeners = Board.remove(gameOverListeners, listener);
+        if (board != null && gameOverListeners.length == 0) {
+            board.removeGameOverListener(onGameOver);
+        }
+    }
+
+    @Override
+    public void removeWinListener(Board.WinListener listener) {
+        winListeners = Board.remove(winListeners, listener);
+        if (board != null && winListeners.length == 0) {
+            board.removeWinListener(onWin);
+        }
+    }
+
+    @Override
+    public void removeMoveListener(Board.MoveListener listener) {
+        moveListeners = Board.remove(moveListeners, listener);
+        if (board != null && moveListeners.length == 0) {
+            board.removeMoveListener(onMove);
+        }
+    }
+
+    @Override
+    public void removeCellRestoredListener(Board.CellRestoredListener listener) {
+        cellRestoredListeners = Board.remove(cellRestoredListeners, listener);
+        if (board != null && cellRestoredListeners.length == 0) {
+            board.removeCellRestoredListener(onCellRestored);
+        }
+    }
+
+    // Plays the same seeded game with a slow listener called inside the move and through the dispatcher,
+    // and compares move latency and what the listener saw.
+    // Usage: AsyncEventDispatcher [moves] [listener micros per event] [capacity] [SPIN|YIELD|PARK] [board size]
+    public static void main(String[] args) {
+        int moves = args.length > 0 ? Integer.parseInt(args[0]) : 2000;
+        long listenerNanos = (long) ((args.length > 1 ? Double.parseDouble(args[1]) : 5) * 1000);
+        int capacity = args.length > 2 ? Integer.parseInt(args[2]) : DEFAULT_CAPACITY;
+        WaitStrategy waitStrategy = args.length > 3 ? WaitStrategy.valueOf(args[3]) : WaitStrategy.PARK;
+        int size = args.length > 4 ? Integer.parseInt(args[4]) : 4;
+
+        for (int mode = 0; mode < 2; mode++) {
+            Board board = new Board(size, 42);
+            var dispatcher = new AsyncEventDispatcher(capacity, waitStrategy);
+            BoardEvents events = mode == 0 ? board : dispatcher;
+            long[] checksum = new long[2];
+            events.addCellCreatedListener((x, y, value) -> {
+                checksum[0] = checksum[0] * 31 + (y * size + x) * 4096L + value;
+                checksum[1]++;
+                spin(listenerNanos);
+            });
+            events.addCellMovedListener((fromX, fromY, toX, toY) -> {
+                checksum[0] = checksum[0] * 31 + ((fromY * size + fromX) * size + toY) * size + toX;
+                checksum[1]++;
+                spin(listenerNanos);
+            });
+            events.addMoveListener(result -> checksum[0] = checksum[0] * 31 + result.getScoreDelta() + result.getCount());
+            if (mode == 1) {
+                dispatcher.attach(board);
+                dispatcher.start();
+            }
+            long[] latencies = new long[moves];
+            var random = new SplitMix64(7);
+            long start = System.nanoTime();
+            int played = 0;
+            for (; played < moves && !board.isGameOver(); played++) {
+                int legal = board.legalMoves();
+                int direction;
+                do {
+                    direction = random.nextInt(4);
+                } while ((legal & 1 << direction) == 0);
+                long t = System.nanoTime();
+                board.move(direction);
+                latencies[played] = System.nanoTime() - t;
+            }
+            long moveNanos = System.nanoTime() - start;
+            dispatcher.close();
+            long total = System.nanoTime() - start;
+            Arrays.sort(latencies, 0, played);
+            System.out.printf("%-6s %d moves, move latency p50 %6.1f us, p99 %7.1f us, moves done in %6.1f ms, "
+                            + "all events delivered in %6.1f ms, %d stalls, %d events, checksum %016x%n",
+                    mode == 0 ? "sync" : "async", played, latencies[played / 2] / 1e3, latencies[played * 99 / 100] / 1e3,
+                    moveNanos / 1e6, total / 1e6, dispatcher.getStalls(), checksum[1], checksum[0]);
+        }
+    }
+
+    private static void spin(long nanos) {
+        for (long end = System.nanoTime() + nanos; System.nanoTime() < end; ) {
+            Thread.onSpinWait();
+        }
+    }
+}
@@ -0,0 +1,318 @@
+// 4x4 board packed into a single long: cell (x, y) is the 4-bit log2 exponent at bits 4 * (4 * y + x),
+// 0 meaning an empty cell. Tiles are capped at 2^15, two 32768 tiles never merge.
+public class BitBoard {
+    public static final int SIZE = 4;
+    private static final int FIRST_CELL_EXPONENT = 1;
+    private static final int MAX_EXPONENT = 15;
+    private static final int ROW_COUNT = 1 << 16;
+
+    private static final char[] ROW_LEFT = new char[ROW_COUNT];
+    private static final char[] ROW_RIGHT = new char[ROW_COUNT];
+    private static final int[] ROW_SCORE = new int[ROW_COUNT];
+    // bit 0: the row changes when moved left, bit 1: when moved right
+    private static final byte[] ROW_MOVES = new byte[ROW_COUNT];
+
+    private long cells;
+    private int score;
+    private final SplitMix64 random;
+    private double fourProbability = 0.0;
+
+    static {
+        int[] line = new int[SIZE];
+        for (int row = 0; row < ROW_COUNT; row++) {
+            for (int i = 0; i < SIZE; i++) {
+                line[i] = (row >>> (4 * i)) & 0xF;
+            }
+            ROW_SCORE[row] = slideLeft(line);
+            int result = 0;
+            for (int i = 0; i < SIZE; i++) {
+                result |= line[i] << (4 * i);
+            }
+            ROW_LEFT[row] = (char) result;
+            ROW_RIGHT[reverseRow(row)] = (char) reverseRow(result);
+        }
+        for (int row = 0; row < ROW_COUNT; row++) {
+            ROW_MOVES[row] = (byte) ((ROW_LEFT[row] != row ? 1 : 0) | (ROW_RIGHT[row] != row ? 2 : 0));
+        }
+    }
+
+    public BitBoard() {
+        this(new SplitMix64());
+    }
+
+    public BitBoard(SplitMix64 random) {
+        this(0L, 0, random);
+        reset();
+    }
+
+    public BitBoard(long cells, int score, SplitMix64 random) {
+        this.cells = cells;
+        this.score = score;
+        this.random = random;
+    }
+
+    public static BitBoard fromBoard(Board board) {
+        BitBoard bitBoard = new BitBoard(pack(board), board.getScore(), new SplitMix64(board.getRandom().getState()));
+        bitBoard.setFourProbability(board.getFourProbability());
+        return bitBoard;
+    }
+
+    public Board toBoard() {
+        int[][] values = new int[SIZE][SIZE];
+        for (int y = 0; y < SIZE; y++) {
+            for (int x = 0; x < SIZE; x++) {
+                values[y][x] = getValue(x, y);
+            }
+        }
+        Board board = new Board(values, new SplitMix64(random.getState()));
+        board.setScore(score);
+        board.setFourProbability(fourProbability);
+        return board;
+    }
+
+    public static long pack(Board board) {
+        if (board.getSize() != SIZE) {
+            throw new IllegalArgumentException("BitBoard only supports " + SIZE + "x" + SIZE + " boards");
+        }
+        long packed = 0;
+        for (int y = 0; y < SIZE; y++) {
+            for (int x = 0; x < SIZE; x++) {
+                int exponent = exponentOf(board.getValue(x, y));
+                packed |= (long) exponent << shift(x, y);
+            }
+        }
+        return packed;
+    }
+
+    public void reset() {
+        cells = 0L;
+        score = 0;
+        createRandomCell();
+        createRandomCell();
+    }
+
+    public double getFourProbability() {
+        return fourProbability;
+    }
+
+    public void setFourProbability(double fourProbability) {
+        this.fourProbability = fourProbability;
+    }
+
+    public int getSize() {
+        return SIZE;
+    }
+
+    public long getCells() {
+        return cells;
+    }
+
+    public int getScore() {
+        return score;
+    }
+
+    public int getValue(int x, int y) {
+        return valueOf(getExponent(cells, x, y));
+    }
+
+    public int getMaxValue() {
+        return valueOf(maxExponent(cells));
+    }
+
+    public boolean moveUp() {
+        return move(Board.UP);
+    }
+
+    public boolean moveDown() {
+        return move(Board.DOWN);
+    }
+
+    public boolean moveLeft() {
+        return move(Board.LEFT);
+    }
+
+    public boolean moveRight() {
+        return move(Board.RIGHT);
+    }
+
+    public boolean move(int direction) {
+        long moved = move(cells, direction);
+        if (moved == cells) {
+            return false;
+        }
+        score += scoreOf(cells, direction);
+        cells = moved;
+        createRandomCell();
+        return true;
+    }
+
+    public boolean hasMoreMoves() {
+        return hasMoreMoves(cells);
+    }
+
+    private void createRandomCell() {
+        int empty = countEmpty(cells);
+        if (empty > 0) {
+            int index = random.nextInt(empty);
+            int exponent = fourProbability > 0 && random.nextDouble() < fourProbability
+                    ? FIRST_CELL_EXPONENT + 1 : FIRST_CELL_EXPONENT;
+            cells = spawn(cells, index, exponent);
+        }
+    }
+
+    public static long move(long cells, int direction) {
+        return switch (direction) {
+            case Board.UP -> transpose(moveLeft(transpose(cells)));
+            case Board.DOWN -> transpose(moveRight(transpose(cells)));
+            case Board.LEFT -> moveLeft(cells);
+            case Board.RIGHT -> moveRight(cells);
+            default -> throw new IllegalArgumentException("Unknown direction: " + direction);
+        };
+    }
+
+    public static long moveLeft(long cells) {
+        return (long) ROW_LEFT[(int) (cells & 0xFFFF)]
+                | (long) ROW_LEFT[(int) ((cells >>> 16) & 0xFFFF)] << 16
+                | (long) ROW_LEFT[(int) ((cells >>> 32) & 0xFFFF)] << 32
+                | (long) ROW_LEFT[(int) (cells >>> 48)] << 48;
+    }
+
+    public static long moveRight(long cells) {
+        return (long) ROW_RIGHT[(int) (cells & 0xFFFF)]
+                | (long) ROW_RIGHT[(int) ((cells >>> 16) & 0xFFFF)] << 16
+                | (long) ROW_RIGHT[(int) ((cells >>> 32) & 0xFFFF)] << 32
+                | (long) ROW_RIGHT[(int) (cells >>> 48)] << 48;
+    }
+
+    public static int scoreOf(long cells, int direction) {
+        long rows = direction == Board.UP || direction == Board.DOWN ? transpose(cells) : cells;
+        return ROW_SCORE[(int) (rows & 0xFFFF)]
+                + ROW_SCORE[(int) ((rows >>> 16) & 0xFFFF)]
+                + ROW_SCORE[(int) ((rows >>> 32) & 0xFFFF)]
+                + ROW_SCORE[(int) (rows >>> 48)];
+    }
+
+    public static long transpose(long cells) {
+        long a1 = cells & 0xF0F00F0FF0F00F0FL;
+        long a2 = cells & 0x0000F0F00000F0F0L;
+        long a3 = cells & 0x0F0F00000F0F0000L;
+        long a = a1 | (a2 << 12) | (a3 >>> 12);
+        long b1 = a & 0xFF00FF0000FF00FFL;
+        long b2 = a & 0x00FF00FF00000000L;
+        long b3 = a & 0x00000000FF00FF00L;
+        return b1 | (b2 >>> 24) | (b3 << 24);
+    }
+
+    public static int countEmpty(long cells) {
+        long occupied = cells | (cells >>> 1) | (cells >>> 2) | (cells >>> 3);
+        return SIZE * SIZE - Long.bitCount(occupied & 0x1111111111111111L);
+    }
+
+    // places the exponent into the emptyIndex-th empty cell, counting in row-major order
+    public static long spawn(long cells, int emptyIndex, int exponent) {
+        for (int shift = 0; shift < 64; shift += 4) {
+            if (((cells >>> shift) & 0xF) == 0) {
+                if (emptyIndex == 0) {
+                    return cells | (long) exponent << shift;
+                }
+                emptyIndex--;
+            }
+        }
+        return cells;
+    }
+
+    public static boolean hasMoreMoves(long cells) {
+        return legalMoves(cells) != 0;
+    }
+
+    // same bitmask as Board.legalMoves(), without performing any of the moves
+    public static int legalMoves(long cells) {
+        long transposed = transpose(cells);
+        int rows = ROW_MOVES[(int) (cells & 0xFFFF)] | ROW_MOVES[(int) ((cells >>> 16) & 0xFFFF)]
+                | ROW_MOVES[(int) ((cells >>> 32) & 0xFFFF)] | ROW_MOVES[(int) (cells >>> 48)];
+        int cols = ROW_MOVES[(int) (transposed & 0xFFFF)] | ROW_MOVES[(int) ((transposed >>> 16) & 0xFFFF)]
+                | ROW_MOVES[(int) ((transposed >>> 32) & 0xFFFF)] | ROW_MOVES[(int) (transposed >>> 48)];
+        return (rows & 1) << Board.LEFT | (rows >>> 1) << Board.RIGHT
+                | (cols & 1) << Board.UP | (cols >>> 1) << Board.DOWN;
+    }
+
+    public static int getExponent(long cells, int x, int y) {
+        return (int) ((cells >>> shift(x, y)) & 0xF);
+    }
+
+    public static int maxExponent(long cells) {
+        int max = 0;
+        for (int shift = 0; shift < 64; shift += 4) {
+            max = Math.max(max, (int) ((cells >>> shift) & 0xF));
+        }
+        return max;
+    }
+
+    static int exponentOf(int value) {
+        if (value == 0) {
+            return 0;
+        }
+        int exponent = Integer.numberOfTrailingZeros(value);
+        if (Integer.bitCount(value) != 1 || exponent > MAX_EXPONENT) {
+            throw new IllegalArgumentException("Value can't be stored in a BitBoard: " + value);
+        }
+        return exponent;
+    }
+
+    static int valueOf(int exponent) {
+        return exponent == 0 ? 0 : 1 << exponent;
+    }
+
+    private static int shift(int x, int y) {
+        return 4 * (SIZE * y + x);
+    }
+
+    private static int reverseRow(int row) {
+        return ((row & 0xF) << 12) | ((row & 0xF0) << 4) | ((row >>> 4) & 0xF0) | (row >>> 12);
+    }
+
+    // same merge-then-slide rules as Board.mergeCellsOnRow/moveCellsOnRow, returns the score gained
+    private static int slideLeft(int[] line) {
+        int gained = 0;
+        int mergeTarget = -1;
+        for (int i = 0; i < line.length; i++) {
+            if (line[i] != 0) {
+                if (mergeTarget == -1 || line[mergeTarget] != line[i] || line[i] == MAX_EXPONENT) {
+                    mergeTarget = i;
+                } else {
+                    line[mergeTarget]++;
+                    line[i] = 0;
+                    gained += valueOf(line[mergeTarget]);
+                    mergeTarget = -1;
+                }
+            }
+        }
+        int write = 0;
+        for (int i = 0; i < line.length; i++) {
+            if (line[i] != 0) {
+                int value = line[i];
+                line[i] = 0;
+                line[write++] = value;
+            }
+        }
+        return gained;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder s = new StringBuilder();
+        String format = "%" + String.valueOf(getMaxValue()).length() + "s ";
+        for (int y = 0; y < SIZE; y++) {
+            for (int x = 0; x < SIZE; x++) {
+                int value = getValue(x, y);
+                if (value == 0) {
+                    s.append(String.format(format, "-"));
+                } else {
+                    s.append(String.format(format, value));
+                }
+            }
+            s.append('\n');
+        }
+        return s.toString();
+    }
+}
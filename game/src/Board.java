@@ -1,21 +1,56 @@
-import java.util.ArrayList;
-import java.util.List;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
 
-public class Board {
+public class Board implements BoardEvents {
     private final static int DEFAULT_BOARD_SIZE = 4;
     private final static int FIRST_CELL_VALUE = 2;
     private final static int goal = 2048;
-    private int[][] cells;
+    public static final int UP = 0;
+    public static final int DOWN = 1;
+    public static final int LEFT = 2;
+    public static final int RIGHT = 3;
+    private static final int DEFAULT_PARALLEL_THRESHOLD = Integer.getInteger("board.parallelThreshold", 1024);
+    private final int size;
+    // row-major, the value of (x, y) is cells[y * size + x]
+    private final int[] cells;
+    private final long[] freeCells;
+    private int freeCount;
+    private final byte[] rowMoves;
+    private final byte[] colMoves;
+    private final int[] movableLines = new int[4];
+    private final long[] dirtyRows;
+    private final long[] dirtyCols;
+    private boolean dirty;
+    private final SplitMix64 random;
+    private double fourProbability = 0.0;
     private int maxValue;
+    private int score;
     private boolean moved = false;
     private boolean merged = false;
 
-    private final List<CellCreatedListener> cellCreatedListeners = new ArrayList<>();
-    private final List<CellMovedListener> cellMovedListeners = new ArrayList<>();
-    private final List<CellMergedFromListener> cellMergedFromListeners = new ArrayList<>();
-    private final List<CellMergedToListener> cellMergedToListeners = new ArrayList<>();
-    private final List<GameOverListener> gameOverListeners = new ArrayList<>();
-    private final List<WinListener> winListeners = new ArrayList<>();
+    private CellCreatedListener[] cellCreatedListeners = new CellCreatedListener[0];
+    private CellMovedListener[] cellMovedListeners = new CellMovedListener[0];
+    private CellMergedFromListener[] cellMergedFromListeners = new CellMergedFromListener[0];
+    private CellMergedToListener[] cellMergedToListeners = new CellMergedToListener[0];
+    private GameOverListener[] gameOverListeners = new GameOverListener[0];
+    private WinListener[] winListeners = new WinListener[0];
+    private MoveListener[] moveListeners = new MoveListener[0];
+    private CellRestoredListener[] cellRestoredListeners = new CellRestoredListener[0];
+    private final MoveResult moveResult = new MoveResult();
+    private boolean recording = false;
+    private BoardHistory history;
+    private boolean recordingHistory = false;
+    private int parallelThreshold = DEFAULT_PARALLEL_THRESHOLD;
+    private ForkJoinPool parallelPool = ForkJoinPool.commonPool();
+    private ParallelMove parallelMove;
+    // only maintained when GameMetrics.ENABLED
+    private long moveStartNanos;
+    private int moveDirection;
+    private int freeCountAtStart;
+    private int maxValueAtStart;
+    private int gameMoves;
+    // Zobrist hash of the position under each of the 8 board symmetries, null unless hashing is enabled
+    private long[] symmetryHashes;
 
     static class Point {
         private final int x, y;
@@ -34,6 +69,33 @@ public class Board {
         }
     }
 
+    // a saved position: the cells with their free-cell mask, score and generator state. gameMoves rides
+    // along for GameMetrics, it only counts moves while metrics are enabled and undo/redo don't restore it
+    public static final class Snapshot {
+        private final int size;
+        private final int[] cells;
+        private final long[] freeCells;
+        private int freeCount;
+        private int maxValue;
+        private int score;
+        private int gameMoves;
+        private long randomState;
+
+        public Snapshot(int size) {
+            this.size = size;
+            this.cells = new int[size * size];
+            this.freeCells = new long[(size * size + 63) >>> 6];
+        }
+
+        public int getSize() {
+            return size;
+        }
+
+        public int getScore() {
+            return score;
+        }
+    }
+
     interface CellCreatedListener {
         void cellCreated(int x, int y, int value);
     }
@@ -58,37 +120,93 @@ public class Board {
         void win();
     }
 
+    // fired by undo() and redo() for every cell they changed, after the whole board has been restored
+    interface CellRestoredListener {
+        void cellRestored(int x, int y, int value);
+    }
+
+    // one call per move with every event of that move, instead of one call per event
+    interface MoveListener {
+        void moveCompleted(MoveResult result);
+    }
+
 
     public Board() {
         this(DEFAULT_BOARD_SIZE);
     }
 
     public Board(int size) {
-        this(new int[size][size]);
+        this(size, new SplitMix64());
+    }
+
+    public Board(int size, long seed) {
+        this(size, new SplitMix64(seed));
+    }
+
+    public Board(int size, SplitMix64 random) {
+        this(size, new int[size * size], random);
         createRandomCells(2);
     }
 
     public Board(int[][] cells) {
-        assert cells.length > 0 && cells.length == cells[0].length;
+        this(cells, new SplitMix64());
+    }
 
-        maxValue = cells[0][0];
-        for (int y = 0; y < cells.length; y++) {
-            for (int x = 0; x < cells.length; x++) {
-                if (cells[y][x] > maxValue) {
-                    maxValue = cells[y][x];
-                }
-            }
-        }
+    // the rows are copied, the board never shares the caller's arrays
+    public Board(int[][] cells, SplitMix64 random) {
+        this(cells.length, flatten(cells), random);
+    }
+
+    private Board(int size, int[] cells, SplitMix64 random) {
+        assert size > 0 && cells.length == size * size;
 
+        this.size = size;
+        freeCells = new long[(size * size + 63) >>> 6];
+        rowMoves = new byte[size];
+        colMoves = new byte[size];
+        dirtyRows = new long[(size + 63) >>> 6];
+        dirtyCols = new long[(size + 63) >>> 6];
         this.cells = cells;
+        this.random = random;
+        scanCells();
+    }
+
+    // an empty board with no tiles spawned, allocated as the one flat array it keeps
+    static Board empty(int size, SplitMix64 random) {
+        return new Board(size, new int[size * size], random);
+    }
+
+    private static int[] flatten(int[][] rows) {
+        int[] cells = new int[rows.length * rows.length];
+        for (int y = 0; y < rows.length; y++) {
+            assert rows[y].length == rows.length;
+            System.arraycopy(rows[y], 0, cells, y * rows.length, rows.length);
+        }
+        return cells;
+    }
+
+    // rebuilds the free-cell mask and the max value from the cells
+    private void scanCells() {
+        Arrays.fill(freeCells, 0);
+        freeCount = 0;
+        maxValue = 0;
+        for (int index = 0; index < cells.length; index++) {
+            int value = cells[index];
+            maxValue = Math.max(maxValue, value);
+            if (value == 0) {
+                freeCells[index >>> 6] |= 1L << index;
+                freeCount++;
+            }
+        }
+        markAllChanged();
     }
 
     public int getSize() {
-        return cells.length;
+        return size;
     }
 
     public int getValue(int x, int y) {
-        return cells[y][x];
+        return cells[y * size + x];
     }
 
     public int getGoal() {
@@ -99,59 +217,165 @@ public class Board {
         return maxValue;
     }
 
+    public int getScore() {
+        return score;
+    }
+
+    public void setScore(int score) {
+        this.score = score;
+    }
+
+    public SplitMix64 getRandom() {
+        return random;
+    }
+
+    public double getFourProbability() {
+        return fourProbability;
+    }
+
+    // chance that a spawned cell is 4 instead of 2; 0 keeps the classic all-2 spawns
+    public void setFourProbability(double fourProbability) {
+        this.fourProbability = fourProbability;
+    }
+
+    public int getFreeCellCount() {
+        return freeCount;
+    }
+
     public void setNumber(int x, int y, int value) {
-        cells[y][x] = value;
+        int old = cells[y * size + x];
+        if (recordingHistory) {
+            history.touch(x, y, old);
+        }
+        cells[y * size + x] = value;
+        if (symmetryHashes != null) {
+            PositionCache.updateHashes(symmetryHashes, size, x, y, old, value);
+        }
+        // branch-free, copying whole positions would otherwise mispredict on every other cell
+        int wasOccupied = (old | -old) >>> 31;
+        int isOccupied = (value | -value) >>> 31;
+        int index = y * size + x;
+        freeCells[index >>> 6] ^= (long) (wasOccupied ^ isOccupied) << index;
+        freeCount += wasOccupied - isOccupied;
+        // only ever raised here: lowering would need a rescan, and the renderer's column width only
+        // needs an upper bound
+        maxValue = Math.max(maxValue, value);
+        markChanged(x, y);
+    }
+
+    // bitmask of the directions that would change the board, bit UP, DOWN, LEFT or RIGHT set
+    public int legalMoves() {
+        if (dirty) {
+            updateLineMoves();
+        }
+        int legal = 0;
+        for (int direction = 0; direction < 4; direction++) {
+            if (movableLines[direction] > 0) {
+                legal |= 1 << direction;
+            }
+        }
+        return legal;
+    }
+
+    public boolean isLegalMove(int direction) {
+        return (legalMoves() & 1 << direction) != 0;
+    }
+
+    // O(1) while any cell is free: a free cell next to a tile always leaves some move
+    public boolean isGameOver() {
+        return freeCount == 0 && legalMoves() == 0;
     }
 
     public void addCellCreatedListener(CellCreatedListener listener) {
-        cellCreatedListeners.add(listener);
+        cellCreatedListeners = append(cellCreatedListeners, listener);
     }
 
     public void addCellMovedListener(CellMovedListener listener) {
-        cellMovedListeners.add(listener);
+        cellMovedListeners = append(cellMovedListeners, listener);
     }
 
     public void addCellMergedFromListener(CellMergedFromListener listener) {
-        cellMergedFromListeners.add(listener);
+        cellMergedFromListeners = append(cellMergedFromListeners, listener);
     }
 
     public void addCellMergedToListener(CellMergedToListener listener) {
-        cellMergedToListeners.add(listener);
+        cellMergedToListeners = append(cellMergedToListeners, listener);
     }
 
     public void addGameOverListener(GameOverListener listener) {
-        gameOverListeners.add(listener);
+        gameOverListeners = append(gameOverListeners, listener);
     }
 
     public void addWinListener(WinListener listener) {
-        winListeners.add(listener);
+        winListeners = append(winListeners, listener);
+    }
+
+    public void addMoveListener(MoveListener listener) {
+        moveListeners = append(moveListeners, listener);
+    }
+
+    public void addCellRestoredListener(CellRestoredListener listener) {
+        cellRestoredListeners = append(cellRestoredListeners, listener);
     }
 
     public void removeCellCreatedListener(CellCreatedListener listener) {
-        cellCreatedListeners.remove(listener);
+        cellCreatedListeners = remove(cellCreatedListeners, listener);
     }
 
     public void removeCellMovedListener(CellMovedListener listener) {
-        cellMovedListeners.remove(listener);
+        cellMovedListeners = remove(cellMovedListeners, listener);
     }
 
     public void removeCellMergedFromListener(CellMergedFromListener listener) {
-        cellMergedFromListeners.remove(listener);
+        cellMergedFromListeners = remove(cellMergedFromListeners, listener);
     }
 
     public void removeCellMergedToListener(CellMergedToListener listener) {
-        cellMergedToListeners.remove(listener);
+        cellMergedToListeners = remove(cellMergedToListeners, listener);
     }
 
     public void removeGameOverListener(GameOverListener listener) {
-        gameOverListeners.remove(listener);
+        gameOverListeners = remove(gameOverListeners, listener);
     }
 
     public void removeWinListener(WinListener listener) {
-        winListeners.remove(listener);
+        winListeners = remove(winListeners, listener);
+    }
+
+    public void removeMoveListener(MoveListener listener) {
+        moveListeners = remove(moveListeners, listener);
+    }
+
+    public void removeCellRestoredListener(CellRestoredListener listener) {
+        cellRestoredListeners = remove(cellRestoredListeners, listener);
+    }
+
+    // listener arrays are copy-on-write so firing events never allocates an iterator
+    static <T> T[] append(T[] listeners, T listener) {
+        T[] copy = Arrays.copyOf(listeners, listeners.length + 1);
+        copy[listeners.length] = listener;
+        return copy;
+    }
+
+    static <T> T[] remove(T[] listeners, T listener) {
+        for (int i = 0; i < listeners.length; i++) {
+            if (listeners[i].equals(listener)) {
+                T[] copy = Arrays.copyOf(listeners, listeners.length - 1);
+                System.arraycopy(listeners, i + 1, copy, i, listeners.length - i - 1);
+                return copy;
+            }
+        }
+        return listeners;
     }
 
+    // copies the cells (and the GameMetrics move counter) into the board; score, generator and rules stay
+    // the board's own
     public void copyTo(Board board) {
+        board.gameMoves = gameMoves;
+        if (board.getSize() == getSize()) {
+            board.copyCells(cells, freeCells, freeCount, maxValue);
+            return;
+        }
         for(int y = 0; y < getSize(); y++) {
             for (int x = 0; x < getSize(); x++) {
                 int value = getValue(x, y);
@@ -160,22 +384,223 @@ public class Board {
         }
     }
 
+    // makes this board continue from the other's position: cells, score and spawn rules, but not the
+    // generator, so a rollout board keeps drawing its own spawns. Like copyTo it also carries the
+    // GameMetrics move counter and no listener fires; the history is cleared, as by restorePosition
+    public void copyFrom(Board board) {
+        checkSameSize(board.size);
+        clearHistory();
+        copyCells(board.cells, board.freeCells, board.freeCount, board.maxValue);
+        score = board.score;
+        gameMoves = board.gameMoves;
+        fourProbability = board.fourProbability;
+    }
+
+    public Snapshot snapshot() {
+        return snapshot(new Snapshot(size));
+    }
+
+    // saves the position into a reusable snapshot of the same size and returns it
+    public Snapshot snapshot(Snapshot into) {
+        checkSameSize(into.size);
+        System.arraycopy(cells, 0, into.cells, 0, cells.length);
+        System.arraycopy(freeCells, 0, into.freeCells, 0, freeCells.length);
+        into.freeCount = freeCount;
+        into.maxValue = maxValue;
+        into.score = score;
+        into.gameMoves = gameMoves;
+        into.randomState = random.getState();
+        return into;
+    }
+
+    // puts back a snapshot, generator state included, so the same moves spawn the same tiles again;
+    // no listener fires and the history is cleared, its moves don't lead to the restored position
+    public void restore(Snapshot snapshot) {
+        checkSameSize(snapshot.size);
+        clearHistory();
+        copyCells(snapshot.cells, snapshot.freeCells, snapshot.freeCount, snapshot.maxValue);
+        score = snapshot.score;
+        gameMoves = snapshot.gameMoves;
+        random.setState(snapshot.randomState);
+    }
+
+    private void copyCells(int[] fromCells, long[] fromFreeCells, int fromFreeCount, int fromMaxValue) {
+        System.arraycopy(fromCells, 0, cells, 0, cells.length);
+        System.arraycopy(fromFreeCells, 0, freeCells, 0, freeCells.length);
+        freeCount = fromFreeCount;
+        maxValue = fromMaxValue;
+        markAllChanged();
+        if (symmetryHashes != null) {
+            rehash();
+        }
+    }
+
+    private void checkSameSize(int otherSize) {
+        if (otherSize != size) {
+            throw new IllegalArgumentException("Board is " + size + "x" + size + ", not " + otherSize + "x" + otherSize);
+        }
+    }
+
+    // replaces the whole position (row-major values), e.g. when seeking in a replay, then fires
+    // CellRestoredListener for every cell; the history is cleared
+    public void restorePosition(int[] values, int score, long randomState) {
+        int size = getSize();
+        maxValue = 0;
+        for (int i = 0; i < values.length; i++) {
+            maxValue = Math.max(maxValue, values[i]);
+        }
+        this.score = score;
+        random.setState(randomState);
+        clearHistory();
+        for (int y = 0; y < size; y++) {
+            for (int x = 0; x < size; x++) {
+                setNumber(x, y, values[y * size + x]);
+            }
+        }
+        if (cellRestoredListeners.length != 0) {
+            for (int y = 0; y < size; y++) {
+                for (int x = 0; x < size; x++) {
+                    for (var listener : cellRestoredListeners) {
+                        listener.cellRestored(x, y, cells[y * size + x]);
+                    }
+                }
+            }
+        }
+    }
+
+    // keeps a Zobrist hash of the position (in all 8 orientations) up to date through every cell
+    // change, for PositionCache keys on boards that don't fit a BitBoard
+    public void setHashingEnabled(boolean enabled) {
+        symmetryHashes = enabled ? new long[PositionCache.SYMMETRIES] : null;
+        if (enabled) {
+            rehash();
+        }
+    }
+
+    public boolean isHashingEnabled() {
+        return symmetryHashes != null;
+    }
+
+    // the same for a position and all of its rotations and reflections
+    public long getCanonicalHash() {
+        if (symmetryHashes == null) {
+            throw new IllegalStateException("Hashing is not enabled");
+        }
+        long min = symmetryHashes[0];
+        for (int s = 1; s < symmetryHashes.length; s++) {
+            min = Math.min(min, symmetryHashes[s]);
+        }
+        return min;
+    }
+
+    private void rehash() {
+        Arrays.fill(symmetryHashes, 0);
+        for (int y = 0; y < size; y++) {
+            for (int x = 0; x < size; x++) {
+                if (cells[y * size + x] != 0) {
+                    PositionCache.updateHashes(symmetryHashes, size, x, y, 0, cells[y * size + x]);
+                }
+            }
+        }
+    }
+
+    // history only covers moves, call clearHistory() after changing cells through setNumber or copyTo
+    public void setHistoryEnabled(boolean enabled) {
+        history = enabled ? new BoardHistory(getSize()) : null;
+    }
+
+    public boolean isHistoryEnabled() {
+        return history != null;
+    }
+
+    public void clearHistory() {
+        if (history != null) {
+            history.clear();
+        }
+    }
+
+    public boolean canUndo() {
+        return history != null && history.canUndo();
+    }
+
+    public boolean canRedo() {
+        return history != null && history.canRedo();
+    }
+
+    public boolean undo() {
+        if (!canUndo()) {
+            return false;
+        }
+        int move = history.getPosition() - 1;
+        int from = history.getChangesFrom(move);
+        int to = history.getChangesTo(move);
+        for (int i = to - 1; i >= from; i--) {
+            int index = history.getCellIndex(i);
+            setNumber(index % getSize(), index / getSize(), history.getOldValue(i));
+        }
+        random.setState(history.getRandomBefore(move));
+        score = history.getScoreBefore(move);
+        maxValue = history.getMaxValueBefore(move);
+        history.stepBack();
+        fireCellsRestored(from, to);
+        return true;
+    }
+
+    public boolean redo() {
+        if (!canRedo()) {
+            return false;
+        }
+        int move = history.getPosition();
+        int from = history.getChangesFrom(move);
+        int to = history.getChangesTo(move);
+        for (int i = from; i < to; i++) {
+            int index = history.getCellIndex(i);
+            setNumber(index % getSize(), index / getSize(), history.getNewValue(i));
+        }
+        random.setState(history.getRandomAfter(move));
+        score = history.getScoreAfter(move);
+        maxValue = history.getMaxValueAfter(move);
+        history.stepForward();
+        fireCellsRestored(from, to);
+        return true;
+    }
+
+    private void fireCellsRestored(int from, int to) {
+        for (int i = from; i < to; i++) {
+            int index = history.getCellIndex(i);
+            int x = index % getSize();
+            int y = index / getSize();
+            for (var listener : cellRestoredListeners) {
+                listener.cellRestored(x, y, getValue(x, y));
+            }
+        }
+    }
+
+    public void move(int direction) {
+        switch (direction) {
+            case UP -> moveUp();
+            case DOWN -> moveDown();
+            case LEFT -> moveLeft();
+            case RIGHT -> moveRight();
+            default -> throw new IllegalArgumentException("Unknown direction: " + direction);
+        }
+    }
+
     public void moveUp() {
         moveUp(1);
     }
 
     public void moveUp(int cellsToGenerate) {
-        for (int x = 0; x < getSize(); x++) {
-            mergeCellsOnCol(x, -1);
-            moveCellsOnCol(x, -1);
-        }
-        if (cellsToGenerate > 1) {
-            createRandomCells(cellsToGenerate);
-        } else if (cellsToGenerate == 1 && (moved || merged)) {
-            createRandomCells(cellsToGenerate);
-            moved = false;
-            merged = false;
+        startMove(UP);
+        if (isParallelMove()) {
+            moveInParallel(UP);
+        } else {
+            for (int x = 0; x < getSize(); x++) {
+                mergeCellsOnCol(x, -1);
+                moveCellsOnCol(x, -1);
+            }
         }
+        finishMove(cellsToGenerate);
     }
 
     public void moveDown() {
@@ -183,17 +608,16 @@ public class Board {
     }
 
     public void moveDown(int cellsToGenerate) {
-        for (int x = 0; x < getSize(); x++) {
-            mergeCellsOnCol(x, 1);
-            moveCellsOnCol(x, 1);
-        }
-        if (cellsToGenerate > 1) {
-            createRandomCells(cellsToGenerate);
-        } else if (cellsToGenerate == 1 && (moved || merged)) {
-            createRandomCells(cellsToGenerate);
-            moved = false;
-            merged = false;
+        startMove(DOWN);
+        if (isParallelMove()) {
+            moveInParallel(DOWN);
+        } else {
+            for (int x = 0; x < getSize(); x++) {
+                mergeCellsOnCol(x, 1);
+                moveCellsOnCol(x, 1);
+            }
         }
+        finishMove(cellsToGenerate);
     }
 
 
@@ -202,17 +626,16 @@ public class Board {
     }
 
     public void moveLeft(int cellsToGenerate) {
-        for (int y = 0; y < getSize(); y++) {
-            mergeCellsOnRow(y, -1);
-            moveCellsOnRow(y, -1);
-        }
-        if (cellsToGenerate > 1) {
-            createRandomCells(cellsToGenerate);
-        } else if (cellsToGenerate == 1 && (moved || merged)) {
-            createRandomCells(cellsToGenerate);
-            moved = false;
-            merged = false;
+        startMove(LEFT);
+        if (isParallelMove()) {
+            moveInParallel(LEFT);
+        } else {
+            for (int y = 0; y < getSize(); y++) {
+                mergeCellsOnRow(y, -1);
+                moveCellsOnRow(y, -1);
+            }
         }
+        finishMove(cellsToGenerate);
     }
 
     public void moveRight() {
@@ -220,9 +643,130 @@ public class Board {
     }
 
     public void moveRight(int cellsToGenerate) {
-        for (int y = 0; y < getSize(); y++) {
-            mergeCellsOnRow(y, 1);
-            moveCellsOnRow(y, 1);
+        startMove(RIGHT);
+        if (isParallelMove()) {
+            moveInParallel(RIGHT);
+        } else {
+            for (int y = 0; y < getSize(); y++) {
+                mergeCellsOnRow(y, 1);
+                moveCellsOnRow(y, 1);
+            }
+        }
+        finishMove(cellsToGenerate);
+    }
+
+    // boards at least this wide move their lines on a fork-join pool; history needs the sequential path
+    public void setParallelThreshold(int size) {
+        parallelThreshold = size;
+    }
+
+    public int getParallelThreshold() {
+        return parallelThreshold;
+    }
+
+    public void setParallelPool(ForkJoinPool pool) {
+        parallelPool = pool;
+    }
+
+    private boolean isParallelMove() {
+        return getSize() >= parallelThreshold && history == null;
+    }
+
+    private void moveInParallel(int direction) {
+        if (parallelMove == null) {
+            parallelMove = new ParallelMove(getSize());
+        }
+        boolean recordEvents = recording || cellMovedListeners.length != 0 || cellMergedFromListeners.length != 0
+                || cellMergedToListeners.length != 0 || winListeners.length != 0;
+        parallelMove.execute(parallelPool, cells, direction, recordEvents);
+
+        boolean changed = false;
+        for (int i = 0; i < parallelMove.getChunkCount(); i++) {
+            var chunk = parallelMove.getChunk(i);
+            score += chunk.score;
+            moved |= chunk.moved;
+            merged |= chunk.merged;
+            changed |= chunk.moved || chunk.merged;
+            for (int word = 0; word < dirtyRows.length; word++) {
+                dirtyRows[word] |= chunk.dirtyRows[word];
+                dirtyCols[word] |= chunk.dirtyCols[word];
+            }
+            if (recordEvents) {
+                fireParallelEvents(chunk.events);
+            } else if (chunk.maxMerged > maxValue) {
+                maxValue = chunk.maxMerged;
+            }
+        }
+        if (changed) {
+            dirty = true;
+            freeCount = parallelMove.rebuildFreeCells(parallelPool, cells, freeCells);
+            if (symmetryHashes != null) {
+                rehash();
+            }
+        }
+    }
+
+    // fires the events of one chunk in the order the sequential loop would have
+    private void fireParallelEvents(MoveResult events) {
+        for (int i = 0; i < events.getCount(); i++) {
+            int fromX = events.getFromX(i), fromY = events.getFromY(i);
+            int toX = events.getToX(i), toY = events.getToY(i);
+            int value = events.getValue(i);
+            if (events.getType(i) == MoveResult.MERGED) {
+                if (value > maxValue) {
+                    maxValue = value;
+                    if (maxValue == getGoal()) {
+                        for (var listener : winListeners) {
+                            listener.win();
+                        }
+                    }
+                }
+                if (recording) {
+                    moveResult.add(MoveResult.MERGED, fromX, fromY, toX, toY, value);
+                    moveResult.addScore(value);
+                }
+                for (var listener : cellMergedFromListeners) {
+                    listener.cellMergedFrom(fromX, fromY, toX, toY, value);
+                }
+                for (var listener : cellMergedToListeners) {
+                    listener.cellMergedTo(toX, toY, fromX, fromY);
+                }
+            } else {
+                if (recording) {
+                    moveResult.add(MoveResult.MOVED, fromX, fromY, toX, toY, value);
+                }
+                for (var listener : cellMovedListeners) {
+                    listener.cellMoved(fromX, fromY, toX, toY);
+                }
+            }
+        }
+    }
+
+    private void startMove(int direction) {
+        if (GameMetrics.ENABLED) {
+            moveStartNanos = System.nanoTime();
+            moveDirection = direction;
+            freeCountAtStart = freeCount;
+            maxValueAtStart = maxValue;
+        }
+        recording = moveListeners.length != 0;
+        if (recording) {
+            moveResult.clear(direction);
+        }
+        if (history != null) {
+            history.begin(random.getState(), score, maxValue);
+            recordingHistory = true;
+        }
+    }
+
+    private void finishMove(int cellsToGenerate) {
+        if (GameMetrics.ENABLED && (moved || merged)) {
+            // each merge frees exactly one cell and slides free none, so the difference is the merge count
+            GameMetrics.moveCompleted(moveDirection, System.nanoTime() - moveStartNanos, freeCount - freeCountAtStart);
+            if (maxValueAtStart < getGoal() && maxValue >= getGoal()) {
+                GameMetrics.win();
+            }
+            gameMoves++;
         }
         if (cellsToGenerate > 1) {
             createRandomCells(cellsToGenerate);
@@ -231,6 +775,16 @@ public class Board {
             moved = false;
             merged = false;
         }
+        if (recordingHistory) {
+            recordingHistory = false;
+            history.commit(this);
+        }
+        if (recording) {
+            recording = false;
+            for (var listener : moveListeners) {
+                listener.moveCompleted(moveResult);
+            }
+        }
     }
 
     private void mergeCellsOnCol(int x, int dy) {
@@ -266,8 +820,21 @@ public class Board {
                 mergeTarget = x;
             } else {
                 int mergedValue = getValue(mergeTarget, y) + num;
-                setNumber(mergeTarget, y, mergedValue);
-                setNumber(x, y, 0);
+                if (recordingHistory) {
+                    history.touch(mergeTarget, y, cells[y * size + mergeTarget]);
+                    history.touch(x, y, num);
+                }
+                cells[y * size + mergeTarget] = mergedValue;
+                cells[y * size + x] = 0;
+                if (symmetryHashes != null) {
+                    PositionCache.updateHashes(symmetryHashes, size, mergeTarget, y, num, mergedValue);
+                    PositionCache.updateHashes(symmetryHashes, size, x, y, num, 0);
+                }
+                toggleFree(x, y);
+                freeCount++;
+                markChanged(mergeTarget, y);
+                markChanged(x, y);
+                score += mergedValue;
                 if (mergedValue > maxValue) {
                     maxValue = mergedValue;
                     if (maxValue == getGoal()) {
@@ -277,6 +844,10 @@ public class Board {
                     }
                 }
                 merged = true;
+                if (recording) {
+                    moveResult.add(MoveResult.MERGED, x, y, mergeTarget, y, mergedValue);
+                    moveResult.addScore(mergedValue);
+                }
                 for (var listener : cellMergedFromListeners) {
                     listener.cellMergedFrom(x, y, mergeTarget, y, mergedValue);
                 }
@@ -296,8 +867,21 @@ public class Board {
                 mergeTarget = y;
             } else {
                 int mergedValue = getValue(x, mergeTarget) + num;
-                setNumber(x, mergeTarget, mergedValue);
-                setNumber(x, y, 0);
+                if (recordingHistory) {
+                    history.touch(x, mergeTarget, cells[mergeTarget * size + x]);
+                    history.touch(x, y, num);
+                }
+                cells[mergeTarget * size + x] = mergedValue;
+                cells[y * size + x] = 0;
+                if (symmetryHashes != null) {
+                    PositionCache.updateHashes(symmetryHashes, size, x, mergeTarget, num, mergedValue);
+                    PositionCache.updateHashes(symmetryHashes, size, x, y, num, 0);
+                }
+                toggleFree(x, y);
+                freeCount++;
+                markChanged(x, mergeTarget);
+                markChanged(x, y);
+                score += mergedValue;
                 if (mergedValue > maxValue) {
                     maxValue = mergedValue;
                     if (maxValue == getGoal()) {
@@ -307,6 +891,10 @@ public class Board {
                     }
                 }
                 merged = true;
+                if (recording) {
+                    moveResult.add(MoveResult.MERGED, x, y, x, mergeTarget, mergedValue);
+                    moveResult.addScore(mergedValue);
+                }
                 for (var listener : cellMergedFromListeners) {
                     listener.cellMergedFrom(x, y, x, mergeTarget, mergedValue);
                 }
@@ -321,99 +909,179 @@ public class Board {
         return mergeTarget;
     }
 
+    // after the merge pass every tile slides to a write cursor that starts at the edge the line moves
+    // towards, so each line is a single pass and every tile moves at most once
     private void moveCellsOnCol(int x, int dy) {
         if (dy < 0) {
+            int to = 0;
             for (int y = 0; y < getSize(); y++) {
-                moveCell(x, y, 0, dy);
+                if (cells[y * size + x] != 0) {
+                    if (y != to) {
+                        slideCell(x, y, x, to);
+                    }
+                    to++;
+                }
             }
         } else {
+            int to = getSize() - 1;
             for (int y = getSize() - 1; y >= 0; y--) {
-                moveCell(x, y, 0, dy);
+                if (cells[y * size + x] != 0) {
+                    if (y != to) {
+                        slideCell(x, y, x, to);
+                    }
+                    to--;
+                }
             }
         }
     }
 
     private void moveCellsOnRow(int y, int dx) {
+        int row = y * size;
         if (dx < 0) {
-            for (int x = 0; x < getSize(); x++) {
-                moveCell(x, y, dx, 0);
+            int to = 0;
+            for (int x = 0; x < size; x++) {
+                if (cells[row + x] != 0) {
+                    if (x != to) {
+                        slideCell(x, y, to, y);
+                    }
+                    to++;
+                }
             }
         } else {
-            for (int x = getSize() - 1; x >= 0; x--) {
-                moveCell(x, y, dx, 0);
+            int to = size - 1;
+            for (int x = size - 1; x >= 0; x--) {
+                if (cells[row + x] != 0) {
+                    if (x != to) {
+                        slideCell(x, y, to, y);
+                    }
+                    to--;
+                }
             }
         }
     }
 
-    private void moveCell(int x, int y, int dx, int dy) {
-        if (cells[y][x] == 0) return;
-
-        int fromX = x;
-        int fromY = y;
-
-        int nextX = x + dx;
-        int nextY = y + dy;
-        while (areCoordsInside(nextX, nextY) && getValue(nextX, nextY) == 0) {
-            setNumber(nextX, nextY, getValue(x, y));
-            setNumber(x, y, 0);
-            x = nextX;
-            y = nextY;
-            nextX += dx;
-            nextY += dy;
+    private void slideCell(int fromX, int fromY, int x, int y) {
+        int value = cells[fromY * size + fromX];
+        if (recordingHistory) {
+            history.touch(x, y, 0);
+            history.touch(fromX, fromY, value);
         }
-        if (fromX != x || fromY != y) {
-            for (var listener : cellMovedListeners) {
-                listener.cellMoved(fromX, fromY, x, y);
-            }
-            moved = true;
+        cells[y * size + x] = value;
+        cells[fromY * size + fromX] = 0;
+        if (symmetryHashes != null) {
+            PositionCache.updateHashes(symmetryHashes, size, x, y, 0, value);
+            PositionCache.updateHashes(symmetryHashes, size, fromX, fromY, value, 0);
         }
+        toggleFree(x, y);
+        toggleFree(fromX, fromY);
+        markChanged(x, y);
+        markChanged(fromX, fromY);
+        if (recording) {
+            moveResult.add(MoveResult.MOVED, fromX, fromY, x, y, value);
+        }
+        for (var listener : cellMovedListeners) {
+            listener.cellMoved(fromX, fromY, x, y);
+        }
+        moved = true;
     }
 
-    private boolean areCoordsInside(int x, int y) {
-        return x >= 0 && x < getSize() && y >= 0 && y < getSize();
+    private void toggleFree(int x, int y) {
+        int index = y * size + x;
+        freeCells[index >>> 6] ^= 1L << index;
     }
 
-    private boolean hasMoreMoves() {
-        for (int y = 0; y < getSize(); y++) {
-            for (int x = 0; x < getSize(); x++) {
-                int num = getValue(x, y);
-                if (num == 0 ||
-                        areCoordsInside(x, y - 1) && getValue(x, y - 1) == num ||
-                        areCoordsInside(x, y + 1) && getValue(x, y + 1) == num ||
-                        areCoordsInside(x - 1, y) && getValue(x - 1, y) == num ||
-                        areCoordsInside(x + 1, y) && getValue(x + 1, y) == num) {
-                    return true;
-                }
+    boolean hasMoreMoves() {
+        return !isGameOver();
+    }
+
+    private void markChanged(int x, int y) {
+        dirtyRows[y >>> 6] |= 1L << y;
+        dirtyCols[x >>> 6] |= 1L << x;
+        dirty = true;
+    }
+
+    private void markAllChanged() {
+        for (int i = 0; i < getSize(); i++) {
+            dirtyRows[i >>> 6] |= 1L << i;
+            dirtyCols[i >>> 6] |= 1L << i;
+        }
+        dirty = true;
+    }
+
+    // recomputes the move flags of the rows and columns touched since the last call
+    private void updateLineMoves() {
+        for (int word = 0; word < dirtyRows.length; word++) {
+            for (long bits = dirtyRows[word]; bits != 0; bits &= bits - 1) {
+                int y = (word << 6) + Long.numberOfTrailingZeros(bits);
+                rowMoves[y] = updateLineMoves(rowMoves[y], lineMoves(0, y, 1, 0), LEFT, RIGHT);
+            }
+            dirtyRows[word] = 0;
+        }
+        for (int word = 0; word < dirtyCols.length; word++) {
+            for (long bits = dirtyCols[word]; bits != 0; bits &= bits - 1) {
+                int x = (word << 6) + Long.numberOfTrailingZeros(bits);
+                colMoves[x] = updateLineMoves(colMoves[x], lineMoves(x, 0, 0, 1), UP, DOWN);
             }
+            dirtyCols[word] = 0;
         }
-        return false;
+        dirty = false;
     }
 
-    private void createRandomCells(int count) {
-        ArrayList<Point> unoccupiedCells = new ArrayList<>();
-        for (int y = 0; y < getSize(); y++) {
-            for (int x = 0; x < getSize(); x++) {
-                if (getValue(x, y) == 0) {
-                    unoccupiedCells.add(new Point(x, y));
+    private byte updateLineMoves(byte old, int moves, int towardsStart, int towardsEnd) {
+        movableLines[towardsStart] += (moves & 1) - (old & 1);
+        movableLines[towardsEnd] += (moves >>> 1) - (old >>> 1);
+        return (byte) moves;
+    }
+
+    // bit 0: tiles can move towards the start of the line, bit 1: towards its end
+    private int lineMoves(int x, int y, int dx, int dy) {
+        boolean towardsStart = false;
+        boolean towardsEnd = false;
+        boolean seenEmpty = false;
+        boolean seenTile = false;
+        int prev = 0;
+        for (int i = 0; i < getSize(); i++, x += dx, y += dy) {
+            int value = cells[y * size + x];
+            if (value == 0) {
+                seenEmpty = true;
+                towardsEnd |= seenTile;
+            } else {
+                towardsStart |= seenEmpty;
+                if (value == prev) {
+                    towardsStart = true;
+                    towardsEnd = true;
                 }
+                prev = value;
+                seenTile = true;
             }
         }
+        return (towardsStart ? 1 : 0) | (towardsEnd ? 2 : 0);
+    }
 
-        for (int i = 0; i < count && unoccupiedCells.size() > 0; i++) {
-            int randomIndex = (int) (Math.random() * unoccupiedCells.size());
-            Point point = unoccupiedCells.get(randomIndex);
-            setNumber(point.x, point.y, FIRST_CELL_VALUE);
-            if (FIRST_CELL_VALUE > maxValue) {
-                maxValue = FIRST_CELL_VALUE;
+    void createRandomCells(int count) {
+        for (int i = 0; i < count && freeCount > 0; i++) {
+            int index = findFreeCell(random.nextInt(freeCount));
+            int value = fourProbability > 0 && random.nextDouble() < fourProbability
+                    ? 2 * FIRST_CELL_VALUE : FIRST_CELL_VALUE;
+            int x = index % getSize();
+            int y = index / getSize();
+            setNumber(x, y, value);
+            if (recording) {
+                moveResult.add(MoveResult.CREATED, x, y, x, y, value);
             }
             for (var listener : cellCreatedListeners) {
-                listener.cellCreated(point.x, point.y, FIRST_CELL_VALUE);
+                listener.cellCreated(x, y, value);
+            }
+            if (GameMetrics.ENABLED) {
+                GameMetrics.cellsSpawned(1);
             }
-            unoccupiedCells.remove(randomIndex);
         }
 
-        if (unoccupiedCells.size() == 0) {
-            if (!hasMoreMoves()) {
+        if (freeCount == 0) {
+            if (isGameOver()) {
+                if (GameMetrics.ENABLED) {
+                    GameMetrics.gameOver(gameMoves, maxValue);
+                }
                 for (var listener : gameOverListeners) {
                     listener.gameOver();
                 }
@@ -422,22 +1090,27 @@ public class Board {
 
     }
 
-    @Override
-    public String toString() {
-        StringBuilder s = new StringBuilder();
-        String format = "%" + String.valueOf(getMaxValue()).length() + "s ";
-        for (int y = 0; y < getSize(); y++) {
-            for (int x = 0; x < getSize(); x++) {
-                int value = getValue(x, y);
-                if (value == 0) {
-                    s.append(String.format(format, "-"));
-                } else {
-                    s.append(String.format(format, value));
+    // index (y * size + x) of the n-th free cell in row-major order
+    private int findFreeCell(int n) {
+        for (int word = 0; word < freeCells.length; word++) {
+            long bits = freeCells[word];
+            int count = Long.bitCount(bits);
+            if (n < count) {
+                for (; n > 0; n--) {
+                    bits &= bits - 1;
                 }
+                return (word << 6) + Long.numberOfTrailingZeros(bits);
             }
-            s.append('\n');
+            n -= count;
         }
-        return s.toString();
+        throw new IllegalStateException("No free cell left");
+    }
+
+    @Override
+    public String toString() {
+        var renderer = new BoardRenderer();
+        renderer.render(this);
+        return renderer.toString();
     }
 
     public String toStringWithoutFormatting() {
@@ -0,0 +1,362 @@
+import java.util.Arrays;
+
+// Many boards of one size moved together. The batch is struct-of-arrays in one long[]: each long holds
+// the exponent of one cell for a group of 8 lanes, one byte per lane, and the array is cell-major,
+// cells[cell * groups + lane / 8] with cell = y * size + x. Scores and SplitMix64 states are per-lane
+// arrays next to it.
+//
+// A move is SIMD within a register: every step of the line rules (close up, merge, close up) is a
+// handful of branch-free 64-bit operations on 8 lanes at once, so the cost does not depend on the
+// positions. Only the score of a merge and the spawns are handled lane by lane. The JDK 17 Vector API
+// is an incubator module that the game is not built with, so this plain-Java form is the only path.
+//
+// The rules, the scores and the spawns (each lane draws from its own generator exactly as Board does)
+// match Board, so loading a Board, applying moves and reading the lane back gives the same cells,
+// score and generator state as moving the Board itself.
+public final class BoardBatch {
+    private static final int FIRST_CELL_EXPONENT = 1;
+    private static final int LANES_PER_GROUP = 8;
+    private static final long LOW_BITS = 0x0101010101010101L;
+    private static final long HIGH_BITS = 0x8080808080808080L;
+    private static final long SEVEN_BITS = 0x7F7F7F7F7F7F7F7FL;
+
+    private final int size;
+    private final int count;
+    private final int groups;
+    private final int cellCount;
+    private final long[] cells;
+    private final long[] changed;
+    private final long[] freeCounts;
+    private final int[] scores;
+    private final long[] randomStates;
+    // group offsets of each line's cells, ordered from the edge the tiles move towards
+    private final int[][][] lines = new int[4][][];
+    private final long[] line;
+    private double fourProbability = 0.0;
+
+    public BoardBatch(int size, int count) {
+        if (size * size > 255) {
+            throw new IllegalArgumentException("Batches hold boards of up to 255 cells: " + size + "x" + size);
+        }
+        this.size = size;
+        this.count = count;
+        this.groups = (count + LANES_PER_GROUP - 1) / LANES_PER_GROUP;
+        this.cellCount = size * size;
+        this.cells = new long[cellCount * groups];
+        this.changed = new long[groups];
+        this.freeCounts = new long[groups];
+        this.scores = new int[count];
+        this.randomStates = new long[count];
+        this.line = new long[size];
+        for (int direction = 0; direction < 4; direction++) {
+            boolean vertical = direction == Board.UP || direction == Board.DOWN;
+            boolean reverse = direction == Board.DOWN || direction == Board.RIGHT;
+            lines[direction] = new int[size][size];
+            for (int l = 0; l < size; l++) {
+                for (int i = 0; i < size; i++) {
+                    int p = reverse ? size - 1 - i : i;
+                    int cell = vertical ? p * size + l : l * size + p;
+                    lines[direction][l][i] = cell * groups;
+                }
+            }
+        }
+    }
+
+    public int getSize() {
+        return size;
+    }
+
+    public int getCount() {
+        return count;
+    }
+
+    public double getFourProbability() {
+        return fourProbability;
+    }
+
+    public void setFourProbability(double fourProbability) {
+        this.fourProbability = fourProbability;
+    }
+
+    // the lane becomes new Board(size, new SplitMix64(seed)): two 2s on an empty board
+    public void reset(int lane, long seed) {
+        for (int cell = 0; cell < cellCount; cell++) {
+            setExponent(lane, cell, 0);
+        }
+        scores[lane] = 0;
+        randomStates[lane] = seed;
+        spawn(lane, cellCount, false);
+        spawn(lane, cellCount - 1, false);
+    }
+
+    // copies the board's cells, score and generator state into the lane
+    public void load(int lane, Board board) {
+        if (board.getSize() != size) {
+            throw new IllegalArgumentException("Batch holds " + size + "x" + size + " boards, not " + board.getSize());
+        }
+        for (int y = 0; y < size; y++) {
+            for (int x = 0; x < size; x++) {
+                int value = board.getValue(x, y);
+                setExponent(lane, y * size + x, value == 0 ? 0 : Integer.numberOfTrailingZeros(value));
+            }
+        }
+        scores[lane] = board.getScore();
+        randomStates[lane] = board.getRandom().getState();
+    }
+
+    // a new Board in the lane's position, with its own copy of the lane's generator
+    public Board toBoard(int lane) {
+        int[][] values = new int[size][size];
+        for (int y = 0; y < size; y++) {
+            for (int x = 0; x < size; x++) {
+                values[y][x] = getValue(lane, x, y);
+            }
+        }
+        Board board = new Board(values, new SplitMix64(randomStates[lane]));
+        board.setScore(scores[lane]);
+        board.setFourProbability(fourProbability);
+        return board;
+    }
+
+    public int getValue(int lane, int x, int y) {
+        int exponent = getExponent(lane, y * size + x);
+        return exponent == 0 ? 0 : 1 << exponent;
+    }
+
+    public int getScore(int lane) {
+        return scores[lane];
+    }
+
+    public long getRandomState(int lane) {
+        return randomStates[lane];
+    }
+
+    private int getExponent(int lane, int cell) {
+        return (int) (cells[cell * groups + lane / LANES_PER_GROUP] >>> 8 * (lane % LANES_PER_GROUP)) & 0xFF;
+    }
+
+    private void setExponent(int lane, int cell, int exponent) {
+        int shift = 8 * (lane % LANES_PER_GROUP);
+        int i = cell * groups + lane / LANES_PER_GROUP;
+        cells[i] = cells[i] & ~(0xFFL << shift) | (long) exponent << shift;
+    }
+
+    // 0xFF in every byte that is not zero; all bytes are exponents below 128, so nothing carries
+    private static long nonZero(long x) {
+        return ((((x + SEVEN_BITS) | x) & HIGH_BITS) >>> 7) * 0xFF;
+    }
+
+    // applies the move to every lane and spawns a tile in each lane it changed; returns how many changed
+    public int move(int direction) {
+        if (direction < 0 || direction > 3) {
+            throw new IllegalArgumentException("Unknown direction: " + direction);
+        }
+        Arrays.fill(changed, 0);
+        for (int[] offsets : lines[direction]) {
+            for (int g = 0; g < groups; g++) {
+                moveLine(offsets, g);
+            }
+        }
+        countFree();
+        int moved = 0;
+        for (int g = 0; g < groups; g++) {
+            for (long bits = changed[g]; bits != 0; ) {
+                int k = Long.numberOfTrailingZeros(bits) >>> 3;
+                bits &= ~(0xFFL << 8 * k);
+                moved++;
+                spawn(g * LANES_PER_GROUP + k, (int) (freeCounts[g] >>> 8 * k) & 0xFF, fourProbability > 0);
+            }
+        }
+        return moved;
+    }
+
+    // close up, merge, close up, with the line of 8 lanes held in the scratch array
+    private void moveLine(int[] offsets, int g) {
+        long[] v = line;
+        for (int i = 0; i < v.length; i++) {
+            v[i] = cells[offsets[i] + g];
+        }
+        long moved = compact(v);
+        for (int i = 0; i < v.length - 1; i++) {
+            // a tile merges with an equal one right behind it, which leaves a hole: nothing merges twice
+            long merged = nonZero(v[i]) & ~nonZero(v[i] ^ v[i + 1]);
+            if (merged != 0) {
+                addScores(g, v[i], merged);
+                v[i] += merged & LOW_BITS;
+                v[i + 1] &= ~merged;
+                moved |= merged;
+            }
+        }
+        moved |= compact(v);
+        for (int i = 0; i < v.length; i++) {
+            cells[offsets[i] + g] = v[i];
+        }
+        changed[g] |= moved;
+    }
+
+    // size - 1 passes that move every tile one step onto an empty cell in front of it; returns the
+    // lanes in which anything moved
+    private static long compact(long[] v) {
+        long moved = 0;
+        for (int pass = 1; pass < v.length; pass++) {
+            for (int i = v.length - 2; i >= 0; i--) {
+                long empty = ~nonZero(v[i]);
+                long slide = v[i + 1] & empty;
+                v[i] |= slide;
+                v[i + 1] ^= slide;
+                moved |= slide;
+            }
+        }
+        return nonZero(moved);
+    }
+
+    // v holds the exponent x of each merging tile before the merge; a merge scores 2^(x + 1)
+    private void addScores(int g, long v, long merged) {
+        for (long bits = merged; bits != 0; ) {
+            int k = Long.numberOfTrailingZeros(bits) >>> 3;
+            bits &= ~(0xFFL << 8 * k);
+            scores[g * LANES_PER_GROUP + k] += 2 << ((v >>> 8 * k) & 0xFF);
+        }
+    }
+
+    private void countFree() {
+        Arrays.fill(freeCounts, 0);
+        for (int cell = 0; cell < cellCount; cell++) {
+            int offset = cell * groups;
+            for (int g = 0; g < groups; g++) {
+                freeCounts[g] += ~nonZero(cells[offset + g]) & LOW_BITS;
+            }
+        }
+    }
+
+    // same draws as Board.createRandomCells: the nextInt(free)-th free cell in row-major order, then
+    // the value (a new Board places its first two tiles before any 4-spawn probability is set)
+    private void spawn(int lane, int free, boolean fours) {
+        int n = nextInt(lane, free);
+        int exponent = fours && nextDouble(lane) < fourProbability ? FIRST_CELL_EXPONENT + 1 : FIRST_CELL_EXPONENT;
+        for (int cell = 0; cell < cellCount; cell++) {
+            if (getExponent(lane, cell) == 0 && n-- == 0) {
+                setExponent(lane, cell, exponent);
+                return;
+            }
+        }
+    }
+
+    // bitmask of the legal directions of every lane, as Board.legalMoves()
+    public void legalMoves(int[] masks) {
+        long[] legal = new long[4];
+        for (int g = 0; g < groups; g++) {
+            for (int direction = 0; direction < 4; direction++) {
+                legal[direction] = 0;
+                for (int[] offsets : lines[direction]) {
+                    for (int i = 0; i < offsets.length - 1; i++) {
+                        long x = cells[offsets[i] + g], y = cells[offsets[i + 1] + g];
+                        // a tile with an empty cell ahead of it, or two equal tiles side by side
+                        legal[direction] |= ~nonZero(x) & nonZero(y) | nonZero(x) & ~nonZero(x ^ y);
+                    }
+                }
+            }
+            int lanes = Math.min(LANES_PER_GROUP, count - g * LANES_PER_GROUP);
+            for (int k = 0; k < lanes; k++) {
+                int mask = 0;
+                for (int direction = 0; direction < 4; direction++) {
+                    mask |= (int) (legal[direction] >>> 8 * k & 1) << direction;
+                }
+                masks[g * LANES_PER_GROUP + k] = mask;
+            }
+        }
+    }
+
+    public int legalMoves(int lane) {
+        int legal = 0;
+        for (int direction = 0; direction < 4; direction++) {
+            for (int[] offsets : lines[direction]) {
+                for (int i = 0; i < offsets.length - 1; i++) {
+                    int x = getExponent(lane, offsets[i] / groups), y = getExponent(lane, offsets[i + 1] / groups);
+                    if (x == 0 ? y != 0 : x == y) {
+                        legal |= 1 << direction;
+                    }
+                }
+            }
+        }
+        return legal;
+    }
+
+    private long nextLong(int lane) {
+        return SplitMix64.mix64(randomStates[lane] += SplitMix64.GOLDEN_GAMMA);
+    }
+
+    private int nextInt(int lane, int bound) {
+        return (int) (((nextLong(lane) >>> 32) * bound) >>> 32);
+    }
+
+    private double nextDouble(int lane) {
+        return (nextLong(lane) >>> 11) * 0x1.0p-53;
+    }
+
+    // Plays the same random directions on a batch and on one Board per lane, restarting finished games
+    // in both, then checks every lane against its Board and reports board-moves per second for each.
+    // Usage: BoardBatch [boards] [moves] [size] [4-spawn probability] [seed]
+    public static void main(String[] args) {
+        int count = args.length > 0 ? Integer.parseInt(args[0]) : 4096;
+        int moves = args.length > 1 ? Integer.parseInt(args[1]) : 2000;
+        int size = args.length > 2 ? Integer.parseInt(args[2]) : 4;
+        double fourProbability = args.length > 3 ? Double.parseDouble(args[3]) : 0.0;
+        long seed = args.length > 4 ? Long.parseLong(args[4]) : System.nanoTime();
+
+        BoardBatch batch = new BoardBatch(size, count);
+        batch.setFourProbability(fourProbability);
+        Board[] boards = new Board[count];
+        SplitMix64 seeds = new SplitMix64(seed);
+        for (int lane = 0; lane < count; lane++) {
+            long gameSeed = seeds.nextLong();
+            batch.reset(lane, gameSeed);
+            boards[lane] = new Board(size, new SplitMix64(gameSeed));
+            boards[lane].setFourProbability(fourProbability);
+        }
+        SplitMix64 directions = seeds.split();
+        int[] masks = new int[count];
+        long batchNanos = 0;
+        long boardNanos = 0;
+        for (int m = 0; m < moves; m++) {
+            int direction = directions.nextInt(4);
+            long start = System.nanoTime();
+            batch.move(direction);
+            batchNanos += System.nanoTime() - start;
+            start = System.nanoTime();
+            for (Board board : boards) {
+                board.move(direction);
+            }
+            boardNanos += System.nanoTime() - start;
+            if (m % 16 == 15) {
+                batch.legalMoves(masks);
+                for (int lane = 0; lane < count; lane++) {
+                    if (masks[lane] == 0) {
+                        long gameSeed = seeds.nextLong();
+                        batch.reset(lane, gameSeed);
+                        boards[lane] = new Board(size, new SplitMix64(gameSeed));
+                        boards[lane].setFourProbability(fourProbability);
+                    }
+                }
+            }
+        }
+
+        batch.legalMoves(masks);
+        int mismatches = 0;
+        for (int lane = 0; lane < count; lane++) {
+            Board board = boards[lane];
+            boolean same = board.getScore() == batch.getScore(lane) && board.getRandom().getState() == batch.getRandomState(lane)
+                    && board.legalMoves() == masks[lane] && board.legalMoves() == batch.legalMoves(lane);
+            for (int y = 0; y < size && same; y++) {
+                for (int x = 0; x < size; x++) {
+                    same &= board.getValue(x, y) == batch.getValue(lane, x, y);
+                }
+            }
+            mismatches += same ? 0 : 1;
+        }
+        long boardMoves = (long) count * moves;
+        System.out.printf("%d %dx%d boards, %d moves each: batch %.1f M board-moves/s, Board %.1f M board-moves/s (%.1fx), %d mismatching lanes%n",
+                count, size, size, moves, boardMoves * 1e3 / batchNanos, boardMoves * 1e3 / boardNanos,
+                (double) boardNanos / batchNanos, mismatches);
+    }
+}
@@ -0,0 +1,35 @@
+// Where listeners of board events are registered: the board itself, whose listeners run inside the
+// move, or an AsyncEventDispatcher attached to it, whose listeners run later on the consumer thread.
+public interface BoardEvents {
+    void addCellCreatedListener(Board.CellCreatedListener listener);
+
+    void addCellMovedListener(Board.CellMovedListener listener);
+
+    void addCellMergedFromListener(Board.CellMergedFromListener listener);
+
+    void addCellMergedToListener(Board.CellMergedToListener listener);
+
+    void addGameOverListener(Board.GameOverListener listener);
+
+    void addWinListener(Board.WinListener listener);
+
+    void addMoveListener(Board.MoveListener listener);
+
+    void addCellRestoredListener(Board.CellRestoredListener listener);
+
+    void removeCellCreatedListener(Board.CellCreatedListener listener);
+
+    void removeCellMovedListener(Board.CellMovedListener listener);
+
+    void removeCellMergedFromListener(Board.CellMergedFromListener listener);
+
+    void removeCellMergedToListener(Board.CellMergedToListener listener);
+
+    void removeGameOverListener(Board.GameOverListener listener);
+
+    void removeWinListener(Board.WinListener listener);
+
+    void removeMoveListener(Board.MoveListener listener);
+
+    void removeCellRestoredListener(Board.CellRestoredListener listener);
+}
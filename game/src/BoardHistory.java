@@ -0,0 +1,177 @@
+import java.util.Arrays;
+
+// Undo/redo log of a Board. Each move is stored as the list of cells it changed, one int per cell
+// (cell index << 12 | old exponent << 6 | new exponent), plus the score, max tile and generator state
+// from before the move. A 4x4 move changes about six cells, so 100,000 moves take a few MB.
+final class BoardHistory {
+    static final int MAX_CELLS = 1 << 20;
+
+    private final int size;
+    private final int[] touchedStamp;
+    private int stamp;
+
+    private int[] changes = new int[256];
+    private int changeCount;
+    private int touchedFrom;
+
+    private int[] moveEnds = new int[64];
+    private long[] randomStates = new long[64];
+    private int[] scores = new int[64];
+    private byte[] maxExponents = new byte[64];
+    private int moveCount;
+    private int position;
+
+    private long pendingRandom;
+    private int pendingScore;
+    private int pendingMaxValue;
+    private long randomAfterLast;
+    private int scoreAfterLast;
+    private int maxValueAfterLast;
+
+    BoardHistory(int size) {
+        if (size * size > MAX_CELLS) {
+            throw new IllegalArgumentException("History is limited to boards of " + MAX_CELLS + " cells");
+        }
+        this.size = size;
+        this.touchedStamp = new int[size * size];
+    }
+
+    void begin(long randomState, int score, int maxValue) {
+        // touched cells are collected after the redo tail, which only gets dropped if the move changes something
+        changeCount = moveCount == 0 ? 0 : moveEnds[moveCount - 1];
+        touchedFrom = changeCount;
+        pendingRandom = randomState;
+        pendingScore = score;
+        pendingMaxValue = maxValue;
+        if (++stamp == 0) {
+            Arrays.fill(touchedStamp, 0);
+            stamp = 1;
+        }
+    }
+
+    // called before the first write to a cell during a move
+    void touch(int x, int y, int oldValue) {
+        int index = y * size + x;
+        if (touchedStamp[index] != stamp) {
+            touchedStamp[index] = stamp;
+            if (changeCount == changes.length) {
+                changes = Arrays.copyOf(changes, changeCount * 2);
+            }
+            changes[changeCount++] = index << 12 | exponentOf(oldValue) << 6;
+        }
+    }
+
+    void commit(Board board) {
+        int write = touchedFrom;
+        for (int i = touchedFrom; i < changeCount; i++) {
+            int index = changes[i] >>> 12;
+            int newExponent = exponentOf(board.getValue(index % size, index / size));
+            if (((changes[i] >>> 6) & 0x3F) != newExponent) {
+                changes[write++] = changes[i] | newExponent;
+            }
+        }
+        int count = write - touchedFrom;
+        if (count == 0) {
+            changeCount = touchedFrom;
+            return;
+        }
+
+        int from = getChangesFrom(position);
+        System.arraycopy(changes, touchedFrom, changes, from, count);
+        changeCount = from + count;
+        if (position == moveEnds.length) {
+            int capacity = position * 2;
+            moveEnds = Arrays.copyOf(moveEnds, capacity);
+            randomStates = Arrays.copyOf(randomStates, capacity);
+            scores = Arrays.copyOf(scores, capacity);
+            maxExponents = Arrays.copyOf(maxExponents, capacity);
+        }
+        moveEnds[position] = changeCount;
+        randomStates[position] = pendingRandom;
+        scores[position] = pendingScore;
+        maxExponents[position] = (byte) exponentOf(pendingMaxValue);
+        position++;
+        moveCount = position;
+        randomAfterLast = board.getRandom().getState();
+        scoreAfterLast = board.getScore();
+        maxValueAfterLast = board.getMaxValue();
+    }
+
+    void clear() {
+        moveCount = 0;
+        position = 0;
+        changeCount = 0;
+    }
+
+    boolean canUndo() {
+        return position > 0;
+    }
+
+    boolean canRedo() {
+        return position < moveCount;
+    }
+
+    int getPosition() {
+        return position;
+    }
+
+    void stepBack() {
+        position--;
+    }
+
+    void stepForward() {
+        position++;
+    }
+
+    int getChangesFrom(int move) {
+        return move == 0 ? 0 : moveEnds[move - 1];
+    }
+
+    int getChangesTo(int move) {
+        return moveEnds[move];
+    }
+
+    int getCellIndex(int change) {
+        return changes[change] >>> 12;
+    }
+
+    int getOldValue(int change) {
+        return valueOf((changes[change] >>> 6) & 0x3F);
+    }
+
+    int getNewValue(int change) {
+        return valueOf(changes[change] & 0x3F);
+    }
+
+    long getRandomBefore(int move) {
+        return randomStates[move];
+    }
+
+    long getRandomAfter(int move) {
+        return move + 1 < moveCount ? randomStates[move + 1] : randomAfterLast;
+    }
+
+    int getScoreBefore(int move) {
+        return scores[move];
+    }
+
+    int getScoreAfter(int move) {
+        return move + 1 < moveCount ? scores[move + 1] : scoreAfterLast;
+    }
+
+    int getMaxValueBefore(int move) {
+        return valueOf(maxExponents[move]);
+    }
+
+    int getMaxValueAfter(int move) {
+        return move + 1 < moveCount ? valueOf(maxExponents[move + 1]) : maxValueAfterLast;
+    }
+
+    private static int exponentOf(int value) {
+        return value == 0 ? 0 : Integer.numberOfTrailingZeros(value);
+    }
+
+    private static int valueOf(int exponent) {
+        return exponent == 0 ? 0 : 1 << exponent;
+    }
+}
@@ -0,0 +1,57 @@
+import java.util.Arrays;
+
+// Scratch boards of one size for searches and rollouts. acquire(position) refills a released board
+// with copyFrom, a few array copies and no garbage; a new board is only created when every pooled
+// one is in use. Pooled boards always move sequentially and each draws spawns from its own generator,
+// split from the pool's. Not thread-safe: every search thread keeps its own pool.
+public final class BoardPool {
+    private final int size;
+    private final SplitMix64 random;
+    private Board[] free = new Board[8];
+    private int freeCount;
+    private int created;
+
+    public BoardPool(int size, SplitMix64 random) {
+        this.size = size;
+        this.random = random;
+    }
+
+    public int getSize() {
+        return size;
+    }
+
+    // boards created so far, in use or not
+    public int getCreated() {
+        return created;
+    }
+
+    // a board in the position of the given one, see Board.copyFrom
+    public Board acquire(Board position) {
+        Board board = acquire();
+        board.copyFrom(position);
+        return board;
+    }
+
+    // a board in whatever position it was released in
+    public Board acquire() {
+        if (freeCount > 0) {
+            Board board = free[--freeCount];
+            free[freeCount] = null;
+            return board;
+        }
+        created++;
+        Board board = Board.empty(size, random.split());
+        board.setParallelThreshold(Integer.MAX_VALUE);
+        return board;
+    }
+
+    public void release(Board board) {
+        if (board.getSize() != size) {
+            throw new IllegalArgumentException("Pool holds " + size + "x" + size + " boards, not " + board.getSize());
+        }
+        if (freeCount == free.length) {
+            free = Arrays.copyOf(free, free.length * 2);
+        }
+        free[freeCount++] = board;
+    }
+}
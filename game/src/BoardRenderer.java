@@ -0,0 +1,119 @@
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+// Renders a board as text into a reusable byte buffer: one row per line, every cell right-aligned to
+// the width of the largest tile and followed by a space, "-" for empty cells. Same output as
+// Board.toString(), without String.format or per-cell allocation.
+public class BoardRenderer {
+    private byte[] buffer = new byte[256];
+    private int length;
+
+    public int render(Board board) {
+        int size = board.getSize();
+        int width = digits(board.getMaxValue());
+        int capacity = size * (size * (width + 1) + 1);
+        if (capacity > buffer.length) {
+            buffer = Arrays.copyOf(buffer, Math.max(capacity, buffer.length * 2));
+        }
+        int position = 0;
+        for (int y = 0; y < size; y++) {
+            for (int x = 0; x < size; x++) {
+                int value = board.getValue(x, y);
+                int end = position + width;
+                if (value == 0) {
+                    Arrays.fill(buffer, position, end - 1, (byte) ' ');
+                    buffer[end - 1] = '-';
+                } else {
+                    int digit = end;
+                    do {
+                        buffer[--digit] = (byte) ('0' + value % 10);
+                        value /= 10;
+                    } while (value != 0);
+                    Arrays.fill(buffer, position, digit, (byte) ' ');
+                }
+                buffer[end] = ' ';
+                position = end + 1;
+            }
+            buffer[position++] = '\n';
+        }
+        length = position;
+        return length;
+    }
+
+    public void write(Board board, OutputStream out) throws IOException {
+        render(board);
+        out.write(buffer, 0, length);
+    }
+
+    public byte[] getBuffer() {
+        return buffer;
+    }
+
+    public int getLength() {
+        return length;
+    }
+
+    @Override
+    public String toString() {
+        return new String(buffer, 0, length, StandardCharsets.ISO_8859_1);
+    }
+
+    // String.format layout the renderer replaced, kept as the reference for main
+    private static String format(Board board) {
+        var s = new StringBuilder();
+        String format = "%" + String.valueOf(board.getMaxValue()).length() + "s ";
+        for (int y = 0; y < board.getSize(); y++) {
+            for (int x = 0; x < board.getSize(); x++) {
+                int value = board.getValue(x, y);
+                s.append(String.format(format, value == 0 ? "-" : String.valueOf(value)));
+            }
+            s.append('\n');
+        }
+        return s.toString();
+    }
+
+    // Compares the renderer with the String.format layout on boards filled cell by cell through
+    // setNumber, largest tile anywhere including (0, 0), and on positions of random games.
+    // Usage: BoardRenderer [boards] [seed]; exits with status 1 on the first difference
+    public static void main(String[] args) {
+        int boards = args.length > 0 ? Integer.parseInt(args[0]) : 10000;
+        long seed = args.length > 1 ? Long.parseLong(args[1]) : System.nanoTime();
+
+        var random = new SplitMix64(seed);
+        var renderer = new BoardRenderer();
+        for (int i = 0; i < boards; i++) {
+            int size = 1 + random.nextInt(8);
+            Board board;
+            if (i % 2 == 0) {
+                board = new Board(new int[size][size]);
+                for (int cells = random.nextInt(size * size + 1); cells > 0; cells--) {
+                    int value = random.nextInt(4) == 0 ? 0 : 2 << random.nextInt(17);
+                    board.setNumber(random.nextInt(size), random.nextInt(size), value);
+                }
+            } else {
+                board = new Board(size, random.split());
+                for (int moves = random.nextInt(200); moves > 0 && !board.isGameOver(); moves--) {
+                    board.move(random.nextInt(4));
+                }
+            }
+            renderer.render(board);
+            String expected = format(board);
+            if (!renderer.toString().equals(expected)) {
+                System.out.printf("board %d differs, seed %d%nexpected:%n%sgot:%n%s", i, seed, expected, renderer);
+                System.exit(1);
+            }
+        }
+        System.out.printf("%d boards rendered as String.format does, seed %d%n", boards, seed);
+    }
+
+    private static int digits(int value) {
+        int digits = 1;
+        while (value >= 10) {
+            value /= 10;
+            digits++;
+        }
+        return digits;
+    }
+}
@@ -3,6 +3,7 @@ import java.awt.*;
 import java.awt.event.MouseAdapter;
 import java.awt.event.MouseEvent;
 import java.awt.geom.RoundRectangle2D;
+import java.awt.image.BufferedImage;
 
 public class BoardView extends JPanel{
 
@@ -13,47 +14,90 @@ public class BoardView extends JPanel{
     private static final Color YOU_WIN_BOARD_COLOR = new Color(255, 255, 155, 150);
     private static final Color GAME_OVER_BOARD_COLOR = new Color(255, 255, 255, 150);
     private static final String STRING_FONT = "Arial";
+    private static final int DEFAULT_FPS = 60;
 
     private Board board;
+    private final BoardEvents events;
     private CellView[][] cellViews;
     private long prevFrameTime = 0;
+    private long frameTime = 0;
+    private final Timer frameTimer;
     private boolean gameOver = false;
     private boolean win = false;
     private RoundRectangle2D actionMessageRect;
     private RoundRectangle2D newGameRect;
     private int actionMsgRectHeight;
 
+    // layout and the pre-rendered button, board and empty grid, rebuilt when the size changes
+    private Image background;
+    private int layoutWidth, layoutHeight, layoutBoardSize;
+    private int cellSize, boardScreenSize, ctrShiftX, ctrShiftY, padding, arcSize;
+    private final Rectangle dirtyCells = new Rectangle();
+
     public BoardView(Board board) {
+        this(board, DEFAULT_FPS);
+    }
+
+    // the view only repaints on its own while some tile is animating; board events and clicks wake it up
+    public BoardView(Board board, int targetFps) {
+        this(board, targetFps, board);
+    }
+
+    // events is the board itself, or an AsyncEventDispatcher attached to it that was started with
+    // startOnEventDispatchThread(), for boards moved off the EDT
+    public BoardView(Board board, int targetFps, BoardEvents events) {
         this.board = board;
+        this.events = events;
+        frameTimer = new Timer(1000 / targetFps, e -> repaintAnimating());
         cellViews = new CellView[this.board.getSize()][this.board.getSize()];
 
-        this.board.addCellCreatedListener((x, y, number) -> {
+        events.addCellCreatedListener((x, y, number) -> {
             cellViews[y][x] = new CellView(x, y, number, board.getGoal());
+            wake(x, y, x, y);
         });
 
-        this.board.addCellMovedListener((fromX, fromY, toX, toY) -> {
+        events.addCellMovedListener((fromX, fromY, toX, toY) -> {
             cellViews[toY][toX] = cellViews[fromY][fromX];
             cellViews[toY][toX].queueMovement(toX, toY);
             cellViews[fromY][fromX] = null;
+            wake(fromX, fromY, toX, toY);
         });
 
-        this.board.addCellMergedFromListener((fromX, fromY, toX, toY, mergedValue) -> {
+        events.addCellMergedFromListener((fromX, fromY, toX, toY, mergedValue) -> {
             cellViews[toY][toX].setNumber(mergedValue);
             cellViews[toY][toX].setDisappearing(true);
+            wake(toX, toY, toX, toY);
         });
 
-        this.board.addCellMergedToListener(((toX, toY, fromX, fromY) -> {
+        events.addCellMergedToListener(((toX, toY, fromX, fromY) -> {
             cellViews[fromY][fromX] =  null;
+            wake(fromX, fromY, toX, toY);
         }));
 
-        this.board.addGameOverListener((()-> {
+        events.addGameOverListener((()-> {
             gameOver = true;
+            repaint();
         }));
 
-        this.board.addWinListener((()-> {
+        events.addWinListener((()-> {
             win = true;
+            repaint();
         }));
 
+        events.addCellRestoredListener((x, y, value) -> {
+            if (value == 0) {
+                cellViews[y][x] = null;
+            } else {
+                cellViews[y][x] = new CellView(x, y, value, board.getGoal());
+                cellViews[y][x].setAppearing(false);
+            }
+            if (gameOver != board.isGameOver()) {
+                gameOver = !gameOver;
+                repaint();
+            }
+            wake(x, y, x, y);
+        });
+
         addMouseListener(new MouseAdapter() {
             @Override
             public void mouseClicked(MouseEvent e) {
@@ -64,6 +108,8 @@ public class BoardView extends JPanel{
                 } else if(newGameRect != null && newGameRect.contains(e.getX(), e.getY())) {
                     restart();
                 }
+                wake();
+                repaint();
             }
         });
 
@@ -80,9 +126,16 @@ public class BoardView extends JPanel{
 
 
     private void restart() {
+        // events of the old game still queued in a dispatcher would otherwise reach the new cell views
+        if (events instanceof AsyncEventDispatcher dispatcher) {
+            dispatcher.awaitDelivered();
+        }
         gameOver = false;
         this.board = new Board();
         this.board.copyTo(Main.board);
+        // copyTo leaves the score alone, the new game starts from 0
+        Main.board.setScore(0);
+        Main.board.clearHistory();
 
         cellViews = new CellView[board.getSize()][board.getSize()];
         for(int y = 0; y < this.board.getSize(); y++) {
@@ -104,30 +157,97 @@ public class BoardView extends JPanel{
         return win;
     }
 
+    public void setTargetFps(int targetFps) {
+        frameTimer.setDelay(1000 / targetFps);
+    }
 
-    @Override
-    protected void paintComponent(Graphics g) {
-        super.paintComponent(g);
+    // time between the last two animation frames in nanoseconds, 0 before the first animation
+    public long getFrameTime() {
+        return frameTime;
+    }
 
-        long frameTime = System.currentTimeMillis();
-        float dt = Math.min((frameTime-prevFrameTime)/1000.0f, 0.1f);
-        prevFrameTime = frameTime;
+    public boolean isAnimating() {
+        return frameTimer.isRunning();
+    }
 
-        Graphics2D g2 = (Graphics2D) g;
+    private void wake() {
+        if (!frameTimer.isRunning()) {
+            // the first frame after idling must not jump the animations forward by the idle time
+            prevFrameTime = System.nanoTime();
+            frameTimer.start();
+        }
+    }
+
+    private void wake(int fromX, int fromY, int toX, int toY) {
+        wake();
+        dirtyCells.setBounds(Math.min(fromX, toX), Math.min(fromY, toY), Math.abs(toX - fromX) + 1, Math.abs(toY - fromY) + 1);
+        repaintCells(dirtyCells);
+    }
+
+    // the frame clock: gives every animating tile the time since the last tick, whether or not its
+    // area is painted this frame, and repaints those areas, or stops the timer if there is none
+    private void repaintAnimating() {
+        long now = System.nanoTime();
+        float dt = Math.min((now - prevFrameTime) / 1e9f, 0.1f);
+        if (now > prevFrameTime) {
+            frameTime = now - prevFrameTime;
+            if (GameMetrics.ENABLED) {
+                GameMetrics.frame(frameTime, frameTimer.getDelay() * 1_000_000L);
+            }
+        }
+        prevFrameTime = now;
 
-        int cellSize = (int) (Math.min(getWidth(), getHeight()) / board.getSize() * 0.6);
-        int boardScreenSize = cellSize * board.getSize();
-        int ctrShiftX = (getWidth() - boardScreenSize) / 2;
-        int ctrShiftY = (getHeight() - boardScreenSize) / 2;
-        int padding = (int) (cellSize * 0.043);
-        int arcSize = (int) (cellSize * 0.18);
+        boolean animating = false;
+        for(int y = 0; y < cellViews.length; y++) {
+            for (int x = 0; x < cellViews.length; x++) {
+                var cellView = cellViews[y][x];
+                if(cellView != null && cellView.isAnimating()) {
+                    cellView.elapse(dt);
+                    cellView.getCellBounds(dirtyCells);
+                    repaintCells(dirtyCells);
+                    animating = true;
+                }
+            }
+        }
+        if(!animating) {
+            frameTimer.stop();
+        }
+    }
+
+    private void repaintCells(Rectangle cells) {
+        if (layoutWidth != getWidth() || layoutHeight != getHeight() || layoutBoardSize != board.getSize()) {
+            repaint();
+        } else {
+            repaint(ctrShiftX + cells.x * cellSize, ctrShiftY + cells.y * cellSize, cells.width * cellSize, cells.height * cellSize);
+        }
+    }
+
+    private void updateLayout() {
+        if (background != null && layoutWidth == getWidth() && layoutHeight == getHeight() && layoutBoardSize == board.getSize()) {
+            return;
+        }
+        layoutWidth = getWidth();
+        layoutHeight = getHeight();
+        layoutBoardSize = board.getSize();
+        cellSize = (int) (Math.min(layoutWidth, layoutHeight) / layoutBoardSize * 0.6);
+        boardScreenSize = cellSize * layoutBoardSize;
+        ctrShiftX = (layoutWidth - boardScreenSize) / 2;
+        ctrShiftY = (layoutHeight - boardScreenSize) / 2;
+        padding = (int) (cellSize * 0.043);
+        arcSize = (int) (cellSize * 0.18);
         int actualCellSize = cellSize - 2 * padding;
 
+        var config = getGraphicsConfiguration();
+        background = config != null
+                ? config.createCompatibleImage(Math.max(1, layoutWidth), Math.max(1, layoutHeight), Transparency.TRANSLUCENT)
+                : new BufferedImage(Math.max(1, layoutWidth), Math.max(1, layoutHeight), BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g2 = (Graphics2D) background.getGraphics();
+
         g2.setColor(MESSAGE_COLOR); //new game button
         newGameRect = new RoundRectangle2D.Double(
-                padding + ctrShiftX + (board.getSize()-1) * cellSize,
-                (getHeight() - boardScreenSize)/6.0,
-                cellSize, (getHeight() - boardScreenSize)/6.0,
+                padding + ctrShiftX + (layoutBoardSize-1) * cellSize,
+                (layoutHeight - boardScreenSize)/6.0,
+                cellSize, (layoutHeight - boardScreenSize)/6.0,
                 arcSize/3.0, arcSize/3.0);
         g2.fill(newGameRect);
 
@@ -141,24 +261,49 @@ public class BoardView extends JPanel{
                 boardScreenSize + 2 * padding, boardScreenSize + 2 * padding,
                 arcSize, arcSize);
 
-        for(int y = 0; y < board.getSize(); y++) {
-            for(int x = 0; x < board.getSize(); x++) {
+        g2.setColor(EMPTY_CELL_COLOR);
+        for(int y = 0; y < layoutBoardSize; y++) {
+            for(int x = 0; x < layoutBoardSize; x++) {
                 int pixelX = ctrShiftX + x * cellSize;
                 int pixelY = ctrShiftY + y * cellSize;
 
-                g2.setColor(EMPTY_CELL_COLOR);
                 g2.fillRoundRect(
                         pixelX + padding, pixelY + padding,
                         actualCellSize, actualCellSize,
                         arcSize, arcSize);
             }
         }
+        g2.dispose();
+    }
+
+
+    @Override
+    protected void paintComponent(Graphics g) {
+        super.paintComponent(g);
+
+        Graphics2D g2 = (Graphics2D) g;
+
+        updateLayout();
+        g2.drawImage(background, 0, 0, null);
+        if (cellSize <= 0) {
+            return;
+        }
 
-        for(int y = 0; y < board.getSize(); y++) {
-            for (int x = 0; x < board.getSize(); x++) {
+        // only the tiles inside the repainted area; animating tiles are indexed by their destination,
+        // which repaintAnimating always includes in the area
+        Rectangle clip = g2.getClipBounds();
+        int fromX = 0, fromY = 0, toX = board.getSize() - 1, toY = board.getSize() - 1;
+        if (clip != null) {
+            fromX = Math.max(fromX, Math.floorDiv(clip.x - ctrShiftX, cellSize));
+            fromY = Math.max(fromY, Math.floorDiv(clip.y - ctrShiftY, cellSize));
+            toX = Math.min(toX, Math.floorDiv(clip.x + clip.width - 1 - ctrShiftX, cellSize));
+            toY = Math.min(toY, Math.floorDiv(clip.y + clip.height - 1 - ctrShiftY, cellSize));
+        }
+        for(int y = fromY; y <= toY; y++) {
+            for (int x = fromX; x <= toX; x++) {
                 var cellView = cellViews[y][x];
                 if(cellView != null) {
-                    cellView.draw(g2, dt, cellSize, ctrShiftX, ctrShiftY, padding, arcSize);
+                    cellView.draw(g2, cellSize, ctrShiftX, ctrShiftY, padding, arcSize);
                 }
             }
         }
@@ -169,7 +314,6 @@ public class BoardView extends JPanel{
         else if(win) {
             displayMessage("You win!", "Keep going", g2, ctrShiftX, ctrShiftY, padding, boardScreenSize, arcSize);
         }
-        repaint();
     }
 
     private void displayMessage(String message, String message2, Graphics2D g2, int ctrShiftX, int ctrShiftY, int padding, int boardScreenSize, int arcSize) {
@@ -1,5 +1,8 @@
 import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.util.LinkedHashMap;
 import java.util.LinkedList;
+import java.util.Map;
 import java.util.Queue;
 public class CellView {
     public static final Color[] colors = new Color[] {new Color(255, 255, 255),
@@ -15,6 +18,17 @@ public class CellView {
     private static final String STRING_FONT = "Arial";
     private static final float SIZE_ANIM_SPEED = 300.0f;
     private static final float MOVEMENT_ANIM_SPEED = 1200.0f;
+    private static final int SCALE_BUCKETS = 32;
+    private static final int MAX_SPRITES = 512;
+
+    // pre-rendered tiles keyed by (exponent, goal length, scale bucket, cell geometry); only touched from the EDT. Sprites for old cell sizes
+    // fall out of the LRU order after a resize.
+    private static final Map<Long, BufferedImage> sprites = new LinkedHashMap<>(MAX_SPRITES, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, BufferedImage> eldest) {
+            return size() > MAX_SPRITES;
+        }
+    };
 
     private int x, y;
     private final Queue<Board.Point> queue;
@@ -26,6 +40,7 @@ public class CellView {
     private float animSize = 20.0f;
     private boolean appearing = true;
     private boolean disappearing = false;
+    private float pendingTime = 0.0f;
 
     public CellView(int x, int y, int number, int goal) {
         queue = new LinkedList<>();
@@ -47,6 +62,10 @@ public class CellView {
         this.y = y;
     }
 
+    public void setAppearing(boolean e) {
+        appearing = e;
+    }
+
     public void setDisappearing(boolean e) {
         disappearing = e;
     }
@@ -55,10 +74,32 @@ public class CellView {
         this.number = number;
     }
 
-    public void draw(Graphics2D g2, float dt, int cellSize, int ctrShiftX, int ctrShiftY, int padding, int arcSize) {
+    public boolean isAnimating() {
+        return appearing || disappearing || nextX != null || !queue.isEmpty();
+    }
+
+    // cells the tile covers until its queued movement is finished, in board coordinates
+    public void getCellBounds(Rectangle bounds) {
+        bounds.setBounds(x, y, 1, 1);
+        if (nextX != null) {
+            bounds.add(nextX + 1, nextY + 1);
+        }
+        for (var point : queue) {
+            bounds.add(point.getX() + 1, point.getY() + 1);
+        }
+    }
+
+    // animation time the board's frame clock has given the tile since it was last drawn
+    public void elapse(float dt) {
+        pendingTime = Math.min(pendingTime + dt, 0.1f);
+    }
+
+    public void draw(Graphics2D g2, int cellSize, int ctrShiftX, int ctrShiftY, int padding, int arcSize) {
+        float dt = pendingTime;
+        pendingTime = 0.0f;
         if (appearing) {
             animSize += SIZE_ANIM_SPEED * dt;
-            if(Math.abs(animSize - cellSize) < 5) {
+            if(animSize > cellSize - 5) {
                 animSize = cellSize;
                 appearing = false;
             }
@@ -107,27 +148,38 @@ public class CellView {
             pixelY = ctrShiftY + y * cellSize;
         }
 
-        float cellCtrShift = Math.abs(cellSize-animSize)/2f;
-
-        for(int i = 1; i <= colors.length; i++) {
-            if(number == (int) Math.pow(2, i)) {
-                g2.setColor(colors[i]);
-                break;
-            }
+        // animation sizes are snapped to SCALE_BUCKETS steps so each step is one cached sprite
+        int bucket = Math.max(1, Math.min(SCALE_BUCKETS, Math.round(animSize * SCALE_BUCKETS / cellSize)));
+        int tileSize = cellSize * bucket / SCALE_BUCKETS;
+        int spriteSize = tileSize - 2 * padding;
+        if (spriteSize <= 0) {
+            return;
+        }
+        int exponent = Integer.numberOfTrailingZeros(number);
+        int goalLength = String.valueOf(goal).length();
+        long key = exponent | goalLength << 6 | bucket << 10 | (long) cellSize << 16 | (long) padding << 32 | (long) arcSize << 44;
+        var sprite = sprites.get(key);
+        if (sprite == null) {
+            sprite = renderSprite(g2, exponent, goalLength, tileSize, spriteSize, arcSize);
+            sprites.put(key, sprite);
         }
-        g2.fillRoundRect(
-                (int) (pixelX + padding + cellCtrShift), (int) (pixelY + padding + cellCtrShift),
-                (int) (animSize - 2 * padding), (int) (animSize - 2 * padding),
-                arcSize, arcSize);
 
-        String numString = String.valueOf(number);
-        String goalString = String.valueOf(goal);
-        int numLength = numString.length();
-        int goalLength = goalString.length();
+        int cellCtrShift = (cellSize - tileSize) / 2;
+        g2.drawImage(sprite, (int) pixelX + padding + cellCtrShift, (int) pixelY + padding + cellCtrShift, null);
+    }
+
+    private BufferedImage renderSprite(Graphics2D target, int exponent, int goalLength, int tileSize, int spriteSize, int arcSize) {
+        var sprite = target.getDeviceConfiguration().createCompatibleImage(spriteSize, spriteSize, Transparency.TRANSLUCENT);
+        var g2 = sprite.createGraphics();
+        g2.setRenderingHints(target.getRenderingHints());
 
-        float fontScale = (float) (numLength + 9)/(goalLength + 9);
+        g2.setColor(colors[Math.min(exponent, colors.length - 1)]);
+        g2.fillRoundRect(0, 0, spriteSize, spriteSize, arcSize, arcSize);
+
+        String numString = String.valueOf(number);
+        float fontScale = (float) (numString.length() + 9)/(goalLength + 9);
         fontScale = (float) Math.pow(fontScale - 1.5f, 2) * 0.59f + 0.45f;
-        int fontSize = (int) (animSize * 0.7 * fontScale);
+        int fontSize = (int) (tileSize * 0.7 * fontScale);
 
         if(number <= 4) {
             g2.setColor(STRING_DARK_COLOR);
@@ -141,7 +193,9 @@ public class CellView {
 
         g2.drawString(
                 numString,
-                pixelX + padding + cellCtrShift + (animSize - 2 * padding) / 2 - stringWidth / 1.95f,
-                pixelY + padding + cellCtrShift + (animSize - 2 * padding) / 2 + stringHeight / 3.25f);
+                spriteSize / 2.0f - stringWidth / 1.95f,
+                spriteSize / 2.0f + stringHeight / 3.25f);
+        g2.dispose();
+        return sprite;
     }
 }
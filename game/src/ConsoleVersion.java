@@ -1,9 +1,33 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
 import java.util.Scanner;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 public class ConsoleVersion {
-    public static void main(String[] args) {
+    private static final byte[] DIRECTIONS = new byte[128];
+
+    static {
+        Arrays.fill(DIRECTIONS, (byte) -1);
+        DIRECTIONS['U'] = DIRECTIONS['u'] = Board.UP;
+        DIRECTIONS['D'] = DIRECTIONS['d'] = Board.DOWN;
+        DIRECTIONS['L'] = DIRECTIONS['l'] = Board.LEFT;
+        DIRECTIONS['R'] = DIRECTIONS['r'] = Board.RIGHT;
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length > 0 && args[0].equals("--stream")) {
+            stream(args);
+            return;
+        }
         Board board = new Board();
+        board.setHistoryEnabled(true);
         AtomicBoolean lost = new AtomicBoolean(false);
 
         board.addGameOverListener((()-> {
@@ -16,7 +40,7 @@ public class ConsoleVersion {
         }));
 
         System.out.println("\nJoin the numbers and get to the 2048 tile! \nUse \"up\", \"down\", \"left\", \"right\" commands to move the board." +
-                "\nUse \"restart\" to start a new game.\n");
+                "\nUse \"undo\" and \"redo\" to take a move back or replay it, \"restart\" to start a new game.\n");
         System.out.println(board);
 
         Scanner sc = new Scanner(System.in);
@@ -27,7 +51,9 @@ public class ConsoleVersion {
                 case "down": board.moveDown(); break;
                 case "left": board.moveLeft(); break;
                 case "right": board.moveRight(); break;
-                case "restart": board = new Board(); break;
+                case "undo": board.undo(); break;
+                case "redo": board.redo(); break;
+                case "restart": board = new Board(); board.setHistoryEnabled(true); break;
                 case "present": break;
                 default:
                     System.out.println("Please provide a valid command. Use \"up\", \"down\", \"left\", \"right\" commands to move the board.");
@@ -35,7 +61,88 @@ public class ConsoleVersion {
             System.out.println(board);
             if(lost.get()) {
                 board = new Board();
+                board.setHistoryEnabled(true);
+            }
+        }
+    }
+
+    // Usage: ConsoleVersion --stream [--every N] [--binary] [--size N] [--seed S] < moves
+    //
+    // Plays a move script from standard input without echoing every move. Text scripts are UDLR
+    // characters (any case, whitespace ignored); binary scripts pack four 2-bit direction codes per
+    // byte, low bits first, like ReplayWriter. The board is printed every N moves (0 = only when a game
+    // ends and at the end of input), and a lost game is followed by a new one as in interactive mode.
+    private static void stream(String[] args) throws IOException {
+        int every = 0;
+        boolean binary = false;
+        int size = 4;
+        long seed = System.nanoTime();
+        for (int i = 1; i < args.length; i++) {
+            switch (args[i]) {
+                case "--every" -> every = Integer.parseInt(args[++i]);
+                case "--binary" -> binary = true;
+                case "--size" -> size = Integer.parseInt(args[++i]);
+                case "--seed" -> seed = Long.parseLong(args[++i]);
+                default -> {
+                    System.err.println("Usage: ConsoleVersion --stream [--every N] [--binary] [--size N] [--seed S] < moves");
+                    System.exit(1);
+                }
             }
         }
+
+        InputStream in = new BufferedInputStream(System.in, 1 << 16);
+        OutputStream out = new BufferedOutputStream(new FileOutputStream(FileDescriptor.out), 1 << 16);
+        BoardRenderer renderer = new BoardRenderer();
+        byte[] input = new byte[1 << 16];
+        Board board = new Board(size, seed);
+        long moves = 0;
+        long games = 0;
+        long invalid = 0;
+        long start = System.nanoTime();
+
+        int read;
+        while ((read = in.read(input)) > 0) {
+            for (int i = 0; i < read; i++) {
+                int b = input[i];
+                int count = binary ? 4 : 1;
+                for (int j = 0; j < count; j++) {
+                    int direction;
+                    if (binary) {
+                        direction = (b >>> (2 * j)) & 3;
+                    } else {
+                        direction = b >= 0 ? DIRECTIONS[b] : -1;
+                        if (direction < 0) {
+                            if (b > ' ') {
+                                invalid++;
+                            }
+                            continue;
+                        }
+                    }
+                    board.move(direction);
+                    moves++;
+                    if (every > 0 && moves % every == 0) {
+                        printBoard(out, renderer, board, moves);
+                    }
+                    if (board.isGameOver()) {
+                        printBoard(out, renderer, board, moves);
+                        out.write(("Game over, score " + board.getScore() + "\n\n").getBytes(StandardCharsets.ISO_8859_1));
+                        games++;
+                        board = new Board(size, board.getRandom().split());
+                    }
+                }
+            }
+        }
+        printBoard(out, renderer, board, moves);
+        out.flush();
+
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.err.printf("%d moves, %d finished games, %d invalid characters in %.3f s: %.0f moves/s%n",
+                moves, games, invalid, seconds, moves / seconds);
+    }
+
+    private static void printBoard(OutputStream out, BoardRenderer renderer, Board board, long moves) throws IOException {
+        out.write(("Move " + moves + ", score " + board.getScore() + "\n").getBytes(StandardCharsets.ISO_8859_1));
+        renderer.write(board, out);
+        out.write('\n');
     }
 }
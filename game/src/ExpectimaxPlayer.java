@@ -0,0 +1,336 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.LongAdder;
+
+public class ExpectimaxPlayer implements Strategy {
+    private static final int DEFAULT_MAX_DEPTH = 8;
+    private static final int DEFAULT_TABLE_BITS = 22;
+    private static final double MIN_PROBABILITY = 0.0001;
+    private static final int DEADLINE_CHECK_MASK = 0xFFF;
+
+    private static final float LOST_PENALTY = 200000.0f;
+    private static final float MONOTONICITY_POWER = 4.0f;
+    private static final float MONOTONICITY_WEIGHT = 47.0f;
+    private static final float SUM_POWER = 3.5f;
+    private static final float SUM_WEIGHT = 11.0f;
+    private static final float MERGES_WEIGHT = 700.0f;
+    private static final float EMPTY_WEIGHT = 270.0f;
+    private static final float[] ROW_HEURISTIC = new float[1 << 16];
+
+    private static final SearchTimeout TIMEOUT = new SearchTimeout();
+
+    private final ForkJoinPool pool;
+    private final long timeBudgetNanos;
+    private final int maxDepth;
+    private final PositionCache table;
+    private final LongAdder nodes = new LongAdder();
+    private final LongAdder searchNanos = new LongAdder();
+    private double fourProbability = 0.0;
+    private boolean symmetric = true;
+    private int lastDepth;
+
+    static {
+        for (int row = 0; row < ROW_HEURISTIC.length; row++) {
+            ROW_HEURISTIC[row] = rowHeuristic(row);
+        }
+    }
+
+    private static final class SearchTimeout extends RuntimeException {
+        private SearchTimeout() {
+            super(null, null, false, false);
+        }
+    }
+
+    public ExpectimaxPlayer(long timeBudgetMillis) {
+        this(ForkJoinPool.commonPool(), timeBudgetMillis, DEFAULT_MAX_DEPTH, DEFAULT_TABLE_BITS);
+    }
+
+    public ExpectimaxPlayer(ForkJoinPool pool, long timeBudgetMillis, int maxDepth, int tableBits) {
+        this.pool = pool;
+        this.timeBudgetNanos = timeBudgetMillis * 1_000_000L;
+        this.maxDepth = maxDepth;
+        this.table = new PositionCache(tableBits);
+    }
+
+    @Override
+    public int chooseMove(long cells) {
+        long start = System.nanoTime();
+        long deadline = start + timeBudgetNanos;
+        table.nextGeneration();
+        int best = -1;
+        for (int depth = 1; depth <= maxDepth; depth++) {
+            long iterationDeadline = depth == 1 ? Long.MAX_VALUE : deadline;
+            int move = pool.invoke(new RootTask(cells, depth, iterationDeadline));
+            if (move == -2) {
+                break;
+            }
+            best = move;
+            lastDepth = depth;
+            if (best == -1 || System.nanoTime() > deadline) {
+                break;
+            }
+        }
+        searchNanos.add(System.nanoTime() - start);
+        return best;
+    }
+
+    public int chooseMove(BitBoard board) {
+        return chooseMove(board.getCells());
+    }
+
+    // must match the spawn probability of the board being played
+    public void setFourProbability(double fourProbability) {
+        this.fourProbability = fourProbability;
+    }
+
+    public int getLastDepth() {
+        return lastDepth;
+    }
+
+    public long getNodes() {
+        return nodes.sum();
+    }
+
+    public double getNodesPerSecond() {
+        long nanos = searchNanos.sum();
+        return nanos == 0 ? 0.0 : nodes.sum() * 1e9 / nanos;
+    }
+
+    // the heuristic and the spawn odds are the same in every orientation, so by default rotated and
+    // reflected positions share one cache entry
+    public void setSymmetricCache(boolean symmetric) {
+        this.symmetric = symmetric;
+    }
+
+    public PositionCache getCache() {
+        return table;
+    }
+
+    public double getCacheHitRate() {
+        return table.getHitRate();
+    }
+
+    public void resetStatistics() {
+        nodes.reset();
+        searchNanos.reset();
+        table.resetStatistics();
+    }
+
+    private final class RootTask extends RecursiveTask<Integer> {
+        private final long cells;
+        private final int depth;
+        private final long deadline;
+
+        RootTask(long cells, int depth, long deadline) {
+            this.cells = cells;
+            this.depth = depth;
+            this.deadline = deadline;
+        }
+
+        @Override
+        protected Integer compute() {
+            List<SpawnTask> tasks = new ArrayList<>();
+            int[] taskMoves = new int[4];
+            int[] emptyCells = new int[4];
+            for (int direction = 0; direction < 4; direction++) {
+                long moved = BitBoard.move(cells, direction);
+                if (moved == cells) {
+                    continue;
+                }
+                int empty = BitBoard.countEmpty(moved);
+                for (int shift = 0; shift < 64; shift += 4) {
+                    if (((moved >>> shift) & 0xF) == 0) {
+                        tasks.add(new SpawnTask(moved | 1L << shift, depth - 1, (1 - fourProbability) / empty,
+                                1 - fourProbability, deadline));
+                        if (fourProbability > 0) {
+                            tasks.add(new SpawnTask(moved | 2L << shift, depth - 1, fourProbability / empty,
+                                    fourProbability, deadline));
+                        }
+                    }
+                }
+                taskMoves[direction] = tasks.size();
+                emptyCells[direction] = empty;
+            }
+            if (tasks.isEmpty()) {
+                return -1;
+            }
+            invokeAll(tasks);
+
+            int best = -1;
+            double bestScore = Double.NEGATIVE_INFINITY;
+            int from = 0;
+            for (int direction = 0; direction < 4; direction++) {
+                int to = taskMoves[direction];
+                if (to == 0) {
+                    continue;
+                }
+                double sum = 0.0;
+                for (int i = from; i < to; i++) {
+                    SpawnTask task = tasks.get(i);
+                    double value = task.join();
+                    if (Double.isNaN(value)) {
+                        return -2;
+                    }
+                    sum += value * task.weight;
+                }
+                double score = sum / emptyCells[direction];
+                if (score > bestScore) {
+                    bestScore = score;
+                    best = direction;
+                }
+                from = to;
+            }
+            return best;
+        }
+    }
+
+    private final class SpawnTask extends RecursiveTask<Double> {
+        private final long cells;
+        private final int depth;
+        private final double probability;
+        private final double weight;
+        private final long deadline;
+        private long visited;
+
+        SpawnTask(long cells, int depth, double probability, double weight, long deadline) {
+            this.cells = cells;
+            this.depth = depth;
+            this.probability = probability;
+            this.weight = weight;
+            this.deadline = deadline;
+        }
+
+        @Override
+        protected Double compute() {
+            try {
+                return maxNode(cells, depth, probability);
+            } catch (SearchTimeout e) {
+                return Double.NaN;
+            } finally {
+                nodes.add(visited);
+            }
+        }
+
+        private double maxNode(long cells, int depth, double probability) {
+            if ((++visited & DEADLINE_CHECK_MASK) == 0 && System.nanoTime() > deadline) {
+                throw TIMEOUT;
+            }
+            double best = 0.0;
+            for (int direction = 0; direction < 4; direction++) {
+                long moved = BitBoard.move(cells, direction);
+                if (moved != cells) {
+                    best = Math.max(best, chanceNode(moved, depth, probability));
+                }
+            }
+            return best;
+        }
+
+        private double chanceNode(long cells, int depth, double probability) {
+            if (depth <= 0 || probability < MIN_PROBABILITY) {
+                return heuristic(cells);
+            }
+            long key = symmetric ? PositionCache.canonical(cells) : cells;
+            float cached = table.get(key, depth);
+            if (!Float.isNaN(cached)) {
+                return cached;
+            }
+            int empty = BitBoard.countEmpty(cells);
+            double twoProbability = 1 - fourProbability;
+            double sum = 0.0;
+            for (int shift = 0; shift < 64; shift += 4) {
+                if (((cells >>> shift) & 0xF) == 0) {
+                    sum += twoProbability * maxNode(cells | 1L << shift, depth - 1, probability * twoProbability / empty);
+                    if (fourProbability > 0) {
+                        sum += fourProbability * maxNode(cells | 2L << shift, depth - 1, probability * fourProbability / empty);
+                    }
+                }
+            }
+            double value = sum / empty;
+            table.put(key, depth, (float) value);
+            return value;
+        }
+    }
+
+    static float heuristic(long cells) {
+        long transposed = BitBoard.transpose(cells);
+        return ROW_HEURISTIC[(int) (cells & 0xFFFF)]
+                + ROW_HEURISTIC[(int) ((cells >>> 16) & 0xFFFF)]
+                + ROW_HEURISTIC[(int) ((cells >>> 32) & 0xFFFF)]
+                + ROW_HEURISTIC[(int) (cells >>> 48)]
+                + ROW_HEURISTIC[(int) (transposed & 0xFFFF)]
+                + ROW_HEURISTIC[(int) ((transposed >>> 16) & 0xFFFF)]
+                + ROW_HEURISTIC[(int) ((transposed >>> 32) & 0xFFFF)]
+                + ROW_HEURISTIC[(int) (transposed >>> 48)];
+    }
+
+    private static float rowHeuristic(int row) {
+        int[] line = new int[BitBoard.SIZE];
+        for (int i = 0; i < line.length; i++) {
+            line[i] = (row >>> (4 * i)) & 0xF;
+        }
+
+        float sum = 0;
+        int empty = 0;
+        int merges = 0;
+        int prev = 0;
+        int counter = 0;
+        for (int rank : line) {
+            sum += (float) Math.pow(rank, SUM_POWER);
+            if (rank == 0) {
+                empty++;
+            } else {
+                if (prev == rank) {
+                    counter++;
+                } else if (counter > 0) {
+                    merges += 1 + counter;
+                    counter = 0;
+                }
+                prev = rank;
+            }
+        }
+        if (counter > 0) {
+            merges += 1 + counter;
+        }
+
+        float monotonicityLeft = 0;
+        float monotonicityRight = 0;
+        for (int i = 1; i < line.length; i++) {
+            float a = (float) Math.pow(line[i - 1], MONOTONICITY_POWER);
+            float b = (float) Math.pow(line[i], MONOTONICITY_POWER);
+            if (line[i - 1] > line[i]) {
+                monotonicityLeft += a - b;
+            } else {
+                monotonicityRight += b - a;
+            }
+        }
+
+        return LOST_PENALTY + EMPTY_WEIGHT * empty + MERGES_WEIGHT * merges
+                - MONOTONICITY_WEIGHT * Math.min(monotonicityLeft, monotonicityRight)
+                - SUM_WEIGHT * sum;
+    }
+
+    public static void main(String[] args) {
+        long budgetMillis = args.length > 0 ? Long.parseLong(args[0]) : 50;
+        int threads = args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+
+        ExpectimaxPlayer player = new ExpectimaxPlayer(new ForkJoinPool(threads), budgetMillis,
+                DEFAULT_MAX_DEPTH, DEFAULT_TABLE_BITS);
+        BitBoard board = new BitBoard();
+        int moves = 0;
+        int direction;
+        while ((direction = player.chooseMove(board)) != -1) {
+            board.move(direction);
+            moves++;
+            if (moves % 100 == 0) {
+                System.out.printf("move %d, score %d, depth %d, %.0f nodes/s, cache hit rate %.1f%%%n",
+                        moves, board.getScore(), player.getLastDepth(),
+                        player.getNodesPerSecond(), player.getCacheHitRate() * 100);
+            }
+        }
+        System.out.println(board);
+        System.out.printf("Game over after %d moves, score %d, max tile %d%n", moves, board.getScore(), board.getMaxValue());
+        System.out.printf("%.0f nodes/s, cache hit rate %.1f%%%n", player.getNodesPerSecond(), player.getCacheHitRate() * 100);
+    }
+}
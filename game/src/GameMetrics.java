@@ -0,0 +1,223 @@
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.management.ObjectName;
+
+// Process-wide counters for the engine and the renderer. Off unless started with -Dgame.metrics=true:
+// ENABLED is a static final, so the JIT drops every "if (GameMetrics.ENABLED)" block at call sites when
+// it is false. When on, the counters are LongAdders (no contention between boards on different
+// threads), the registry is exported over JMX and summarised to java.util.logging every
+// -Dgame.metrics.logSeconds (60 by default, 0 turns the dump off).
+public final class GameMetrics implements GameMetricsMXBean {
+    public static final boolean ENABLED = Boolean.getBoolean("game.metrics");
+    private static final int LOG_SECONDS = Integer.getInteger("game.metrics.logSeconds", 60);
+    private static final Logger LOGGER = Logger.getLogger(GameMetrics.class.getName());
+    private static final GameMetrics INSTANCE = new GameMetrics();
+
+    private final long startNanos = System.nanoTime();
+    private final LongAdder[] moves = adders(4);
+    private final LongAdder merges = new LongAdder();
+    private final LongAdder spawns = new LongAdder();
+    private final LongAdder[] latency = adders(64);
+    private final LongAdder gamesFinished = new LongAdder();
+    private final LongAdder gameMoves = new LongAdder();
+    private final LongAdder wins = new LongAdder();
+    private final LongAdder[] maxTiles = adders(32);
+    private final LongAdder frames = new LongAdder();
+    private final LongAdder frameNanos = new LongAdder();
+    private final LongAdder droppedFrames = new LongAdder();
+
+    static {
+        if (ENABLED) {
+            try {
+                ManagementFactory.getPlatformMBeanServer().registerMBean(INSTANCE, new ObjectName("game:type=GameMetrics"));
+            } catch (Exception e) {
+                LOGGER.log(Level.WARNING, "Could not register game metrics over JMX", e);
+            }
+            if (LOG_SECONDS > 0) {
+                var logger = Executors.newSingleThreadScheduledExecutor(task -> {
+                    Thread thread = new Thread(task, "game-metrics-log");
+                    thread.setDaemon(true);
+                    return thread;
+                });
+                logger.scheduleAtFixedRate(() -> LOGGER.info(INSTANCE.summary()), LOG_SECONDS, LOG_SECONDS, TimeUnit.SECONDS);
+            }
+        }
+    }
+
+    private GameMetrics() {
+    }
+
+    public static GameMetrics get() {
+        return INSTANCE;
+    }
+
+    private static LongAdder[] adders(int count) {
+        var adders = new LongAdder[count];
+        for (int i = 0; i < count; i++) {
+            adders[i] = new LongAdder();
+        }
+        return adders;
+    }
+
+    // a move that changed the board
+    static void moveCompleted(int direction, long nanos, int mergeCount) {
+        INSTANCE.moves[direction].increment();
+        INSTANCE.latency[63 - Long.numberOfLeadingZeros(Math.max(1, nanos))].increment();
+        if (mergeCount > 0) {
+            INSTANCE.merges.add(mergeCount);
+        }
+    }
+
+    static void cellsSpawned(int count) {
+        INSTANCE.spawns.add(count);
+    }
+
+    static void win() {
+        INSTANCE.wins.increment();
+    }
+
+    static void gameOver(int moveCount, int maxValue) {
+        INSTANCE.gamesFinished.increment();
+        INSTANCE.gameMoves.add(moveCount);
+        INSTANCE.maxTiles[Integer.numberOfTrailingZeros(maxValue) & 31].increment();
+    }
+
+    static void frame(long nanos, long targetNanos) {
+        INSTANCE.frames.increment();
+        INSTANCE.frameNanos.add(nanos);
+        // a frame that took n target intervals means n - 1 frames were never drawn
+        if (nanos > targetNanos + targetNanos / 2) {
+            INSTANCE.droppedFrames.add(Math.max(1, nanos / targetNanos - 1));
+        }
+    }
+
+    @Override
+    public long getMoves() {
+        long total = 0;
+        for (var adder : moves) {
+            total += adder.sum();
+        }
+        return total;
+    }
+
+    @Override
+    public double[] getMovesPerSecond() {
+        double seconds = (System.nanoTime() - startNanos) / 1e9;
+        double[] rates = new double[moves.length];
+        for (int i = 0; i < moves.length; i++) {
+            rates[i] = moves[i].sum() / seconds;
+        }
+        return rates;
+    }
+
+    @Override
+    public double getMergesPerMove() {
+        long total = getMoves();
+        return total == 0 ? 0.0 : (double) merges.sum() / total;
+    }
+
+    @Override
+    public long getSpawns() {
+        return spawns.sum();
+    }
+
+    @Override
+    public long[] getMoveLatencyHistogram() {
+        return sums(latency);
+    }
+
+    @Override
+    public long getMoveLatencyP50Nanos() {
+        return latencyPercentile(0.50);
+    }
+
+    @Override
+    public long getMoveLatencyP99Nanos() {
+        return latencyPercentile(0.99);
+    }
+
+    // upper bound of the histogram bucket holding the percentile
+    private long latencyPercentile(double p) {
+        long[] counts = getMoveLatencyHistogram();
+        long total = 0;
+        for (long count : counts) {
+            total += count;
+        }
+        long rank = (long) Math.ceil(p * total);
+        long seen = 0;
+        for (int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if (seen >= rank && seen > 0) {
+                return i >= 62 ? Long.MAX_VALUE : 2L << i;
+            }
+        }
+        return 0;
+    }
+
+    @Override
+    public long getGamesFinished() {
+        return gamesFinished.sum();
+    }
+
+    @Override
+    public double getAverageGameLength() {
+        long games = gamesFinished.sum();
+        return games == 0 ? 0.0 : (double) gameMoves.sum() / games;
+    }
+
+    @Override
+    public long getWins() {
+        return wins.sum();
+    }
+
+    @Override
+    public long[] getMaxTileCounts() {
+        return sums(maxTiles);
+    }
+
+    @Override
+    public long getFrames() {
+        return frames.sum();
+    }
+
+    @Override
+    public double getAverageFrameTimeMillis() {
+        long count = frames.sum();
+        return count == 0 ? 0.0 : frameNanos.sum() / 1e6 / count;
+    }
+
+    @Override
+    public long getDroppedFrames() {
+        return droppedFrames.sum();
+    }
+
+    private static long[] sums(LongAdder[] adders) {
+        long[] sums = new long[adders.length];
+        for (int i = 0; i < adders.length; i++) {
+            sums[i] = adders[i].sum();
+        }
+        return sums;
+    }
+
+    public String summary() {
+        double[] rates = getMovesPerSecond();
+        var s = new StringBuilder();
+        s.append(String.format("moves %d (up %.1f/s, down %.1f/s, left %.1f/s, right %.1f/s), %.2f merges/move, %d spawns, "
+                        + "move latency p50 < %d ns, p99 < %d ns; ",
+                getMoves(), rates[Board.UP], rates[Board.DOWN], rates[Board.LEFT], rates[Board.RIGHT], getMergesPerMove(),
+                getSpawns(), getMoveLatencyP50Nanos(), getMoveLatencyP99Nanos()));
+        s.append(String.format("games %d (average %.1f moves, %d wins, max tiles", getGamesFinished(), getAverageGameLength(), getWins()));
+        long[] tiles = getMaxTileCounts();
+        for (int i = 0; i < tiles.length; i++) {
+            if (tiles[i] != 0) {
+                s.append(' ').append(1 << i).append('x').append(tiles[i]);
+            }
+        }
+        s.append(String.format("); frames %d, %.2f ms average, %d dropped", getFrames(), getAverageFrameTimeMillis(), getDroppedFrames()));
+        return s.toString();
+    }
+}
@@ -0,0 +1,34 @@
+// JMX view of GameMetrics, registered as "game:type=GameMetrics" when -Dgame.metrics=true.
+// Counts are totals since start; rates are averages since start.
+public interface GameMetricsMXBean {
+    long getMoves();
+
+    // moves per second in Board.UP, DOWN, LEFT, RIGHT order
+    double[] getMovesPerSecond();
+
+    double getMergesPerMove();
+
+    long getSpawns();
+
+    // moves that took [2^i, 2^(i+1)) ns
+    long[] getMoveLatencyHistogram();
+
+    long getMoveLatencyP50Nanos();
+
+    long getMoveLatencyP99Nanos();
+
+    long getGamesFinished();
+
+    double getAverageGameLength();
+
+    long getWins();
+
+    // finished games by the exponent of their largest tile
+    long[] getMaxTileCounts();
+
+    long getFrames();
+
+    double getAverageFrameTimeMillis();
+
+    long getDroppedFrames();
+}
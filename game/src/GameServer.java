@@ -0,0 +1,221 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+// Line-based game server on the loopback interface, one Board and one thread per connection.
+//
+// Commands are the ConsoleVersion ones (up, down, left, right, undo, redo, restart, present) plus
+// "stats" and "quit". Every reply is the events of the command, one per line:
+//
+//   moved fromX fromY toX toY value | merged fromX fromY toX toY value | created x y value
+//   restored x y value | win | gameover | error message
+//
+// followed by "score N", the board as printed by BoardRenderer and an empty line. Sessions that send
+// nothing for the idle timeout get "evicted" and are closed.
+public class GameServer implements Closeable {
+    private static final int SESSION_STACK_SIZE = 256 * 1024;
+    private static final int MAX_LINE = 256;
+
+    private final ServerSocket serverSocket;
+    private final ExecutorService sessions;
+    private final int idleTimeoutMillis;
+    private final SplitMix64 random;
+    private final AtomicInteger activeSessions = new AtomicInteger();
+    private final LongAdder totalSessions = new LongAdder();
+    private final LongAdder evictedSessions = new LongAdder();
+    private final LongAdder commands = new LongAdder();
+    private volatile boolean running = true;
+
+    public GameServer(int port, int idleTimeoutMillis, long seed) throws IOException {
+        this.serverSocket = new ServerSocket(port, 4096, InetAddress.getLoopbackAddress());
+        this.sessions = newSessionExecutor();
+        this.idleTimeoutMillis = idleTimeoutMillis;
+        this.random = new SplitMix64(seed);
+        Thread acceptor = new Thread(this::acceptLoop, "game-server-accept");
+        acceptor.setDaemon(true);
+        acceptor.start();
+    }
+
+    // virtual threads where the runtime has them (JDK 21+), otherwise platform threads with small stacks
+    static ExecutorService newSessionExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            return Executors.newCachedThreadPool(task -> {
+                Thread thread = new Thread(null, task, "game-session", SESSION_STACK_SIZE);
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+
+    public int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    public int getActiveSessions() {
+        return activeSessions.get();
+    }
+
+    public long getEvictedSessions() {
+        return evictedSessions.sum();
+    }
+
+    private void acceptLoop() {
+        while (running) {
+            try {
+                Socket socket = serverSocket.accept();
+                // the accept thread owns the root generator, so splitting needs no locking
+                SplitMix64 sessionRandom = random.split();
+                activeSessions.incrementAndGet();
+                totalSessions.increment();
+                sessions.execute(() -> new Session(socket, sessionRandom).run());
+            } catch (IOException e) {
+                if (running) {
+                    System.err.println("accept failed: " + e.getMessage());
+                }
+            }
+        }
+    }
+
+    private final class Session {
+        private final Socket socket;
+        private final StringBuilder events = new StringBuilder();
+        private final BoardRenderer renderer = new BoardRenderer();
+        private final byte[] line = new byte[MAX_LINE];
+        private final SplitMix64 random;
+        private Board board;
+
+        Session(Socket socket, SplitMix64 random) {
+            this.socket = socket;
+            this.random = random;
+            newBoard();
+        }
+
+        private void newBoard() {
+            board = new Board(4, random.split());
+            board.setHistoryEnabled(true);
+            board.addMoveListener(result -> {
+                for (int i = 0; i < result.getCount(); i++) {
+                    switch (result.getType(i)) {
+                        case MoveResult.MOVED -> events.append("moved ").append(result.getFromX(i)).append(' ').append(result.getFromY(i)).append(' ');
+                        case MoveResult.MERGED -> events.append("merged ").append(result.getFromX(i)).append(' ').append(result.getFromY(i)).append(' ');
+                        default -> events.append("created ");
+                    }
+                    events.append(result.getToX(i)).append(' ').append(result.getToY(i)).append(' ').append(result.getValue(i)).append('\n');
+                }
+            });
+            board.addCellRestoredListener((x, y, value) ->
+                    events.append("restored ").append(x).append(' ').append(y).append(' ').append(value).append('\n'));
+            board.addWinListener(() -> events.append("win\n"));
+            board.addGameOverListener(() -> events.append("gameover\n"));
+        }
+
+        void run() {
+            try (socket) {
+                socket.setSoTimeout(idleTimeoutMillis);
+                socket.setTcpNoDelay(true);
+                InputStream in = new BufferedInputStream(socket.getInputStream(), 512);
+                OutputStream out = new BufferedOutputStream(socket.getOutputStream(), 1024);
+                while (running) {
+                    int length;
+                    try {
+                        length = readLine(in);
+                    } catch (SocketTimeoutException e) {
+                        evictedSessions.increment();
+                        out.write("evicted\n\n".getBytes());
+                        out.flush();
+                        return;
+                    }
+                    if (length < 0) {
+                        return;
+                    }
+                    commands.increment();
+                    String command = new String(line, 0, length).trim().toLowerCase();
+                    events.setLength(0);
+                    switch (command) {
+                        case "up" -> board.moveUp();
+                        case "down" -> board.moveDown();
+                        case "left" -> board.moveLeft();
+                        case "right" -> board.moveRight();
+                        case "undo" -> board.undo();
+                        case "redo" -> board.redo();
+                        case "restart" -> newBoard();
+                        case "present" -> { }
+                        case "stats" -> appendStats(events);
+                        case "quit" -> {
+                            return;
+                        }
+                        default -> events.append("error unknown command\n");
+                    }
+                    events.append("score ").append(board.getScore()).append('\n');
+                    for (int i = 0; i < events.length(); i++) {
+                        out.write(events.charAt(i));
+                    }
+                    renderer.write(board, out);
+                    out.write('\n');
+                    out.flush();
+                }
+            } catch (IOException e) {
+                // connection reset by the client: nothing to clean up beyond the socket
+            } finally {
+                activeSessions.decrementAndGet();
+            }
+        }
+
+        // reads one line into the buffer, returns its length (longer lines are truncated) or -1 at end of stream
+        private int readLine(InputStream in) throws IOException {
+            int length = 0;
+            int b;
+            while ((b = in.read()) >= 0 && b != '\n') {
+                if (length < MAX_LINE) {
+                    line[length++] = (byte) b;
+                }
+            }
+            return b < 0 && length == 0 ? -1 : length;
+        }
+    }
+
+    private void appendStats(StringBuilder s) {
+        long heapUsed = ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+        s.append("sessions ").append(activeSessions.get()).append('\n')
+                .append("total_sessions ").append(totalSessions.sum()).append('\n')
+                .append("evicted ").append(evictedSessions.sum()).append('\n')
+                .append("commands ").append(commands.sum()).append('\n')
+                .append("heap_used ").append(heapUsed).append('\n');
+    }
+
+    @Override
+    public void close() throws IOException {
+        running = false;
+        serverSocket.close();
+        sessions.shutdownNow();
+        try {
+            sessions.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : 2048;
+        int idleSeconds = args.length > 1 ? Integer.parseInt(args[1]) : 300;
+        GameServer server = new GameServer(port, idleSeconds * 1000, System.nanoTime());
+        System.out.println("Listening on " + InetAddress.getLoopbackAddress().getHostAddress() + ":" + server.getPort()
+                + ", idle timeout " + idleSeconds + " s");
+        Thread.currentThread().join();
+    }
+}
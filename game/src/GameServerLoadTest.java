@@ -0,0 +1,139 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+
+// Drives many GameServer sessions at once. Every session connects, waits until all sessions are
+// open, then sends random moves and times each reply. Reports throughput, latency percentiles and how
+// many idle sessions fit in a GB of server heap.
+//
+// Usage: GameServerLoadTest [sessions] [commands per session] [port]
+// Without a port an in-process server is started; with one, heap figures come from its "stats" reply.
+public class GameServerLoadTest {
+    private static final byte[][] MOVES = {"up\n".getBytes(), "down\n".getBytes(), "left\n".getBytes(), "right\n".getBytes()};
+
+    public static void main(String[] args) throws Exception {
+        int sessions = args.length > 0 ? Integer.parseInt(args[0]) : 1000;
+        int commandsPerSession = args.length > 1 ? Integer.parseInt(args[1]) : 200;
+        GameServer server = args.length > 2 ? null : new GameServer(0, 60_000, 1);
+        int port = server != null ? server.getPort() : Integer.parseInt(args[2]);
+
+        long heapBefore = heapUsed(server, port);
+        long[][] latencies = new long[sessions][commandsPerSession];
+        CountDownLatch connected = new CountDownLatch(sessions);
+        CountDownLatch measured = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(sessions);
+        List<Throwable> failures = new ArrayList<>();
+
+        ExecutorService clients = GameServer.newSessionExecutor();
+        for (int i = 0; i < sessions; i++) {
+            long[] sessionLatencies = latencies[i];
+            SplitMix64 random = new SplitMix64(i);
+            clients.execute(() -> {
+                boolean counted = false;
+                try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), port)) {
+                    socket.setTcpNoDelay(true);
+                    InputStream in = new BufferedInputStream(socket.getInputStream(), 1024);
+                    OutputStream out = new BufferedOutputStream(socket.getOutputStream(), 64);
+                    out.write("present\n".getBytes());
+                    out.flush();
+                    readReply(in);
+                    connected.countDown();
+                    counted = true;
+                    measured.await();
+                    for (int c = 0; c < sessionLatencies.length; c++) {
+                        long start = System.nanoTime();
+                        out.write(MOVES[random.nextInt(4)]);
+                        out.flush();
+                        readReply(in);
+                        sessionLatencies[c] = System.nanoTime() - start;
+                    }
+                    out.write("quit\n".getBytes());
+                    out.flush();
+                } catch (Exception e) {
+                    synchronized (failures) {
+                        failures.add(e);
+                    }
+                    // a session that fails after connecting has counted itself already
+                    if (!counted) {
+                        connected.countDown();
+                    }
+                } finally {
+                    done.countDown();
+                }
+            });
+        }
+
+        connected.await();
+        long heapWithSessions = heapUsed(server, port);
+        double bytesPerSession = (double) (heapWithSessions - heapBefore) / sessions;
+        long start = System.nanoTime();
+        measured.countDown();
+        done.await();
+        double seconds = (System.nanoTime() - start) / 1e9;
+        clients.shutdown();
+        clients.awaitTermination(10, TimeUnit.SECONDS);
+        if (server != null) {
+            server.close();
+        }
+
+        long[] all = Arrays.stream(latencies).flatMapToLong(Arrays::stream).filter(latency -> latency > 0).sorted().toArray();
+        if (all.length == 0) {
+            System.out.println("no commands completed, " + failures.size() + " failed sessions");
+            return;
+        }
+        System.out.printf("%d sessions, %d commands in %.2f s: %.0f commands/s, %d failed sessions%n",
+                sessions, all.length, seconds, all.length / seconds, failures.size());
+        System.out.printf("latency p50 %.3f ms, p99 %.3f ms, p99.9 %.3f ms, max %.3f ms%n",
+                percentile(all, 0.50) / 1e6, percentile(all, 0.99) / 1e6, percentile(all, 0.999) / 1e6, all[all.length - 1] / 1e6);
+        System.out.printf("%.0f bytes of heap per idle session, %.0f sessions per GB%s%n", bytesPerSession,
+                (1L << 30) / Math.max(1.0, bytesPerSession), server != null ? " (client and server share the heap)" : "");
+    }
+
+    private static long percentile(long[] sorted, double p) {
+        return sorted[Math.min(sorted.length - 1, (int) (p * sorted.length))];
+    }
+
+    // reads lines up to the empty line that ends every reply
+    private static void readReply(InputStream in) throws IOException {
+        int previous = '\n';
+        int b;
+        while ((b = in.read()) >= 0) {
+            if (b == '\n' && previous == '\n') {
+                return;
+            }
+            previous = b;
+        }
+        throw new IOException("connection closed");
+    }
+
+    // heap after a collection for an in-process server; a remote server reports its current heap use
+    private static long heapUsed(GameServer server, int port) throws IOException {
+        if (server != null) {
+            System.gc();
+            return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+        }
+        try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), port)) {
+            OutputStream out = socket.getOutputStream();
+            out.write("stats\nquit\n".getBytes());
+            out.flush();
+            var reply = new String(socket.getInputStream().readAllBytes());
+            for (String line : reply.split("\n")) {
+                if (line.startsWith("heap_used ")) {
+                    return Long.parseLong(line.substring("heap_used ".length()));
+                }
+            }
+        }
+        throw new IOException("no heap_used in stats reply");
+    }
+}
@@ -12,12 +12,19 @@ public class Main extends JFrame {
         setTitle("2048");
         setDefaultCloseOperation(EXIT_ON_CLOSE);
 
-        AtomicReference<BoardView> boardView = new AtomicReference<>(new BoardView(board));
+        board.setHistoryEnabled(true);
+        AtomicReference<BoardView> boardView = new AtomicReference<>(new BoardView(board, Integer.getInteger("game.fps", 60)));
         add(boardView.get());
 
         addKeyListener(new KeyAdapter() {
             public void keyPressed(KeyEvent e) {
-                if(!boardView.get().isGameOver() && !boardView.get().isWin()) {
+                if(e.isControlDown() && e.getKeyCode() == KeyEvent.VK_Z) {
+                    board.undo();
+                    repaint();
+                } else if(e.isControlDown() && e.getKeyCode() == KeyEvent.VK_Y) {
+                    board.redo();
+                    repaint();
+                } else if(!boardView.get().isGameOver() && !boardView.get().isWin()) {
                     switch(e.getKeyCode()) {
                         case KeyEvent.VK_UP -> {
                             board.moveUp();
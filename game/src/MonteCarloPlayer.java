@@ -0,0 +1,181 @@
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+// Pure Monte-Carlo move selection for boards of any size: every legal move is followed by random
+// playouts to game over, and the move with the best mean final score (or mean max tile) wins. The
+// playouts of a move are split evenly over one worker per pool thread. Each worker owns its generator
+// and a BoardPool whose boards are refilled with copyFrom, so workers share nothing but the read-only
+// root position.
+public class MonteCarloPlayer implements Strategy {
+    private static final int DEFAULT_PLAYOUTS = 1000;
+
+    private final ForkJoinPool pool;
+    private final int playoutsPerMove;
+    private final boolean byMaxTile;
+    private final int maxPlayoutMoves;
+    private final Worker[] workers;
+    private final Board bitBoardRoot = new Board(new int[BitBoard.SIZE][BitBoard.SIZE]);
+    private final int[] bitBoardValues = new int[BitBoard.SIZE * BitBoard.SIZE];
+    private long playouts;
+    private long searchNanos;
+
+    private static final class Worker {
+        private final SplitMix64 random;
+        private BoardPool boards;
+        private final double[] totals = new double[4];
+        private final long[] counts = new long[4];
+
+        Worker(SplitMix64 random) {
+            this.random = random;
+        }
+
+        // one pool per worker, replaced only if the root size changes
+        BoardPool boardsFor(Board root) {
+            if (boards == null || boards.getSize() != root.getSize()) {
+                boards = new BoardPool(root.getSize(), random.split());
+            }
+            return boards;
+        }
+    }
+
+    public MonteCarloPlayer(int playoutsPerMove) {
+        this(ForkJoinPool.commonPool(), playoutsPerMove, false, 0, new SplitMix64());
+    }
+
+    // maxPlayoutMoves cuts playouts short on big boards, where random games run for a long time; 0 means no limit
+    public MonteCarloPlayer(ForkJoinPool pool, int playoutsPerMove, boolean byMaxTile, int maxPlayoutMoves, SplitMix64 random) {
+        this.pool = pool;
+        this.playoutsPerMove = playoutsPerMove;
+        this.byMaxTile = byMaxTile;
+        this.maxPlayoutMoves = maxPlayoutMoves > 0 ? maxPlayoutMoves : Integer.MAX_VALUE;
+        this.workers = new Worker[pool.getParallelism()];
+        for (int i = 0; i < workers.length; i++) {
+            workers[i] = new Worker(random.split());
+        }
+    }
+
+    @Override
+    public int chooseMove(long cells) {
+        for (int i = 0; i < bitBoardValues.length; i++) {
+            bitBoardValues[i] = BitBoard.valueOf((int) (cells >>> (4 * i)) & 0xF);
+        }
+        bitBoardRoot.restorePosition(bitBoardValues, 0, 0);
+        return chooseMove(bitBoardRoot);
+    }
+
+    // the board is only read; returns -1 when no move changes it
+    @Override
+    public int chooseMove(Board board) {
+        int legal = board.legalMoves();
+        if (Integer.bitCount(legal) <= 1) {
+            return legal == 0 ? -1 : Integer.numberOfTrailingZeros(legal);
+        }
+        long start = System.nanoTime();
+        pool.invoke(new PlayoutTask(board, legal, 0, workers.length));
+        searchNanos += System.nanoTime() - start;
+
+        int best = -1;
+        double bestMean = Double.NEGATIVE_INFINITY;
+        for (int direction = 0; direction < 4; direction++) {
+            if ((legal & 1 << direction) == 0) {
+                continue;
+            }
+            double total = 0;
+            long count = 0;
+            for (var worker : workers) {
+                total += worker.totals[direction];
+                count += worker.counts[direction];
+            }
+            playouts += count;
+            double mean = total / count;
+            if (mean > bestMean) {
+                bestMean = mean;
+                best = direction;
+            }
+        }
+        return best;
+    }
+
+    public double getPlayoutsPerSecond() {
+        return searchNanos == 0 ? 0.0 : playouts * 1e9 / searchNanos;
+    }
+
+    private final class PlayoutTask extends RecursiveAction {
+        private final Board root;
+        private final int legal;
+        private final int fromWorker, toWorker;
+
+        PlayoutTask(Board root, int legal, int fromWorker, int toWorker) {
+            this.root = root;
+            this.legal = legal;
+            this.fromWorker = fromWorker;
+            this.toWorker = toWorker;
+        }
+
+        @Override
+        protected void compute() {
+            if (toWorker - fromWorker > 1) {
+                int middle = (fromWorker + toWorker) >>> 1;
+                invokeAll(new PlayoutTask(root, legal, fromWorker, middle), new PlayoutTask(root, legal, middle, toWorker));
+                return;
+            }
+            Worker worker = workers[fromWorker];
+            BoardPool boards = worker.boardsFor(root);
+            int share = playoutsPerMove / workers.length + (fromWorker < playoutsPerMove % workers.length ? 1 : 0);
+            for (int direction = 0; direction < 4; direction++) {
+                worker.totals[direction] = 0;
+                worker.counts[direction] = 0;
+                if ((legal & 1 << direction) == 0) {
+                    continue;
+                }
+                for (int i = 0; i < share; i++) {
+                    Board rollout = boards.acquire(root);
+                    rollout.move(direction);
+                    worker.totals[direction] += playout(rollout, worker.random);
+                    boards.release(rollout);
+                    worker.counts[direction]++;
+                }
+            }
+        }
+    }
+
+    private double playout(Board board, SplitMix64 random) {
+        for (int moves = 0; moves < maxPlayoutMoves; moves++) {
+            int legal = board.legalMoves();
+            if (legal == 0) {
+                break;
+            }
+            for (int skip = random.nextInt(Integer.bitCount(legal)); skip > 0; skip--) {
+                legal &= legal - 1;
+            }
+            board.move(Integer.numberOfTrailingZeros(legal));
+        }
+        return byMaxTile ? board.getMaxValue() : board.getScore();
+    }
+
+    public static void main(String[] args) {
+        int size = args.length > 0 ? Integer.parseInt(args[0]) : 4;
+        int playouts = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_PLAYOUTS;
+        int threads = args.length > 2 ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+        long seed = args.length > 3 ? Long.parseLong(args[3]) : System.nanoTime();
+
+        SplitMix64 random = new SplitMix64(seed);
+        MonteCarloPlayer player = new MonteCarloPlayer(new ForkJoinPool(threads), playouts, false, 0, random.split());
+        Board board = new Board(size, random.split());
+        long start = System.nanoTime();
+        int moves = 0;
+        int direction;
+        while ((direction = player.chooseMove(board)) != -1) {
+            board.move(direction);
+            moves++;
+            if (moves % 100 == 0) {
+                System.out.printf("move %d, score %d, max tile %d, %.0f playouts/s%n",
+                        moves, board.getScore(), board.getMaxValue(), player.getPlayoutsPerSecond());
+            }
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.out.print(board);
+        System.out.printf("Game over after %d moves in %.1f s, score %d, max tile %d, %.0f playouts/s on %d threads%n",
+                moves, seconds, board.getScore(), board.getMaxValue(), player.getPlayoutsPerSecond(), threads);
+    }
+}
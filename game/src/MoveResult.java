@@ -0,0 +1,78 @@
+import java.util.Arrays;
+
+// Everything one move did, in the order Board fired it. Records are packed into a single int array
+// (type, fromX, fromY, toX, toY, value) and the instance is reused by the board for every move, so
+// listeners must copy out whatever they want to keep.
+public final class MoveResult {
+    public static final int MOVED = 0;
+    public static final int MERGED = 1;
+    public static final int CREATED = 2;
+
+    private static final int RECORD_SIZE = 6;
+
+    private int[] records = new int[RECORD_SIZE * 32];
+    private int count;
+    private int direction;
+    private int scoreDelta;
+
+    void clear(int direction) {
+        this.direction = direction;
+        count = 0;
+        scoreDelta = 0;
+    }
+
+    void add(int type, int fromX, int fromY, int toX, int toY, int value) {
+        int offset = count * RECORD_SIZE;
+        if (offset + RECORD_SIZE > records.length) {
+            records = Arrays.copyOf(records, records.length * 2);
+        }
+        records[offset] = type;
+        records[offset + 1] = fromX;
+        records[offset + 2] = fromY;
+        records[offset + 3] = toX;
+        records[offset + 4] = toY;
+        records[offset + 5] = value;
+        count++;
+    }
+
+    void addScore(int score) {
+        scoreDelta += score;
+    }
+
+    public int getDirection() {
+        return direction;
+    }
+
+    public int getScoreDelta() {
+        return scoreDelta;
+    }
+
+    public int getCount() {
+        return count;
+    }
+
+    public int getType(int i) {
+        return records[i * RECORD_SIZE];
+    }
+
+    public int getFromX(int i) {
+        return records[i * RECORD_SIZE + 1];
+    }
+
+    public int getFromY(int i) {
+        return records[i * RECORD_SIZE + 2];
+    }
+
+    public int getToX(int i) {
+        return records[i * RECORD_SIZE + 3];
+    }
+
+    public int getToY(int i) {
+        return records[i * RECORD_SIZE + 4];
+    }
+
+    // tile value after the event: the moved tile, the merged sum or the created tile
+    public int getValue(int i) {
+        return records[i * RECORD_SIZE + 5];
+    }
+}
@@ -0,0 +1,166 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+// n-tuple value function over 4x4 BitBoard positions. Four 6-cell tuples are each read in all eight
+// symmetries of the board; every reading indexes a table of 16^6 weights, one per combination of
+// exponents, and the value of a position is the sum of the 32 weights it selects.
+//
+// The tables are 256 MB of floats and live off the heap, either in direct buffers or memory-mapped
+// from a file, so a trained network opens without reading or parsing anything and training writes
+// straight into the page cache. File layout: long MAGIC, int VERSION, int tuple count, int tuple
+// length, zero padding up to HEADER_BYTES, then the tables back to back as little-endian floats.
+//
+// Updates are Hogwild: training threads read and write the shared tables with absolute get/put and no
+// locking. Now and then two threads overwrite each other's change to the same weight; over millions of
+// sparse updates that costs nothing measurable, and no thread ever waits.
+public class NTupleNetwork implements Closeable {
+    static final long MAGIC = 0x323034384E545500L; // "2048NTU\0"
+    static final int VERSION = 1;
+    private static final int HEADER_BYTES = 64;
+    private static final int[][] TUPLES = {
+            {0, 1, 2, 3, 4, 5},
+            {4, 5, 6, 7, 8, 9},
+            {0, 1, 2, 4, 5, 6},
+            {4, 5, 6, 8, 9, 10},
+    };
+    private static final int TUPLE_LENGTH = 6;
+    private static final int TABLE_SIZE = 1 << 4 * TUPLE_LENGTH;
+    private static final long TABLE_BYTES = (long) TABLE_SIZE * Float.BYTES;
+    private static final int SYMMETRIES = 8;
+    public static final int FEATURE_COUNT = TUPLES.length * SYMMETRIES;
+
+    // bit offsets into the BitBoard long of each cell of each symmetric tuple, and the table it indexes
+    private static final int[][] SHIFTS = new int[FEATURE_COUNT][TUPLE_LENGTH];
+    private static final int[] TABLE_OF = new int[FEATURE_COUNT];
+
+    private final FileChannel channel;
+    private final ByteBuffer[] buffers;
+    private final FloatBuffer[] tables;
+
+    static {
+        for (int t = 0; t < TUPLES.length; t++) {
+            for (int s = 0; s < SYMMETRIES; s++) {
+                int feature = t * SYMMETRIES + s;
+                TABLE_OF[feature] = t;
+                for (int k = 0; k < TUPLE_LENGTH; k++) {
+                    int x = TUPLES[t][k] % BitBoard.SIZE, y = TUPLES[t][k] / BitBoard.SIZE;
+                    // bit 0 mirrors x, bit 1 mirrors y, bit 2 transposes: the eight symmetries of a square
+                    int sx = (s & 1) != 0 ? BitBoard.SIZE - 1 - x : x;
+                    int sy = (s & 2) != 0 ? BitBoard.SIZE - 1 - y : y;
+                    int cell = (s & 4) != 0 ? BitBoard.SIZE * sx + sy : BitBoard.SIZE * sy + sx;
+                    SHIFTS[feature][k] = 4 * cell;
+                }
+            }
+        }
+    }
+
+    private NTupleNetwork(FileChannel channel, ByteBuffer[] buffers) {
+        this.channel = channel;
+        this.buffers = buffers;
+        this.tables = new FloatBuffer[buffers.length];
+        for (int t = 0; t < buffers.length; t++) {
+            tables[t] = buffers[t].order(ByteOrder.LITTLE_ENDIAN).asFloatBuffer();
+        }
+    }
+
+    // all weights zero, in direct buffers; nothing is saved
+    public static NTupleNetwork inMemory() {
+        var buffers = new ByteBuffer[TUPLES.length];
+        for (int t = 0; t < buffers.length; t++) {
+            buffers[t] = ByteBuffer.allocateDirect((int) TABLE_BYTES);
+        }
+        return new NTupleNetwork(null, buffers);
+    }
+
+    // maps the weights file, creating a zeroed network if it does not exist yet; with writable false
+    // the mapping is read-only and update() throws
+    public static NTupleNetwork open(Path path, boolean writable) throws IOException {
+        FileChannel channel = writable
+                ? FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)
+                : FileChannel.open(path, StandardOpenOption.READ);
+        try {
+            long expectedSize = HEADER_BYTES + TUPLES.length * TABLE_BYTES;
+            if (channel.size() == 0 && writable) {
+                ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+                header.putLong(MAGIC).putInt(VERSION).putInt(TUPLES.length).putInt(TUPLE_LENGTH).clear();
+                channel.write(header, 0);
+            } else {
+                ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+                channel.read(header, 0);
+                header.flip();
+                if (header.remaining() < 20 || header.getLong() != MAGIC) {
+                    throw new IOException("Not an n-tuple network: " + path);
+                }
+                if (header.getInt() != VERSION || header.getInt() != TUPLES.length || header.getInt() != TUPLE_LENGTH) {
+                    throw new IOException("Unsupported n-tuple network layout: " + path);
+                }
+                if (channel.size() != expectedSize) {
+                    throw new IOException("Truncated n-tuple network: " + path);
+                }
+            }
+            var mode = writable ? FileChannel.MapMode.READ_WRITE : FileChannel.MapMode.READ_ONLY;
+            var buffers = new ByteBuffer[TUPLES.length];
+            for (int t = 0; t < buffers.length; t++) {
+                // mapping past the end grows the file; the new tables read as zero
+                buffers[t] = channel.map(mode, HEADER_BYTES + t * TABLE_BYTES, TABLE_BYTES);
+            }
+            return new NTupleNetwork(channel, buffers);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    public float value(long cells) {
+        float sum = 0;
+        for (int f = 0; f < FEATURE_COUNT; f++) {
+            sum += tables[TABLE_OF[f]].get(index(cells, SHIFTS[f]));
+        }
+        return sum;
+    }
+
+    // adds delta to every weight the position selects
+    public void update(long cells, float delta) {
+        for (int f = 0; f < FEATURE_COUNT; f++) {
+            FloatBuffer table = tables[TABLE_OF[f]];
+            int i = index(cells, SHIFTS[f]);
+            table.put(i, table.get(i) + delta);
+        }
+    }
+
+    private static int index(long cells, int[] shifts) {
+        int index = 0;
+        for (int k = 0; k < shifts.length; k++) {
+            index |= (int) (cells >>> shifts[k] & 0xF) << 4 * k;
+        }
+        return index;
+    }
+
+    public long getWeightBytes() {
+        return TUPLES.length * TABLE_BYTES;
+    }
+
+    // writes dirty pages of a mapped network back to the file
+    public void force() {
+        for (var buffer : buffers) {
+            if (buffer instanceof MappedByteBuffer mapped && !mapped.isReadOnly()) {
+                mapped.force();
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (channel != null) {
+            force();
+            channel.close();
+        }
+    }
+}
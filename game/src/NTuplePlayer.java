@@ -0,0 +1,28 @@
+// Greedy one-ply player for a trained NTupleNetwork: picks the move with the largest immediate score
+// plus network value of the position after the move, before the new tile appears. It only reads the
+// network, so one player can be shared by any number of threads.
+public class NTuplePlayer implements Strategy {
+    private final NTupleNetwork network;
+
+    public NTuplePlayer(NTupleNetwork network) {
+        this.network = network;
+    }
+
+    @Override
+    public int chooseMove(long cells) {
+        int best = -1;
+        float bestValue = Float.NEGATIVE_INFINITY;
+        for (int direction = 0; direction < 4; direction++) {
+            long after = BitBoard.move(cells, direction);
+            if (after == cells) {
+                continue;
+            }
+            float value = BitBoard.scoreOf(cells, direction) + network.value(after);
+            if (value > bestValue) {
+                bestValue = value;
+                best = direction;
+            }
+        }
+        return best;
+    }
+}
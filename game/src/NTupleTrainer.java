@@ -0,0 +1,179 @@
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+// Self-play TD(0) training of an NTupleNetwork on afterstates (the position after a move, before the
+// new tile). Every game is played greedily with the current weights; after each move the previous
+// afterstate's value is pulled toward the reward of the new move plus the new afterstate's value, and
+// the last afterstate of a game toward zero. The games run on BitBoard, whose moves follow Board's
+// rules. All threads update the one shared network without locks (see NTupleNetwork).
+//
+// Usage: NTupleTrainer <weights file | -> <games> [threads] [seed] [learning rate] [evaluation games]
+// A weights file that exists is trained further; "-" trains an in-memory network that is discarded.
+public class NTupleTrainer {
+    private static final float DEFAULT_LEARNING_RATE = 0.1f;
+    private static final int DEFAULT_EVALUATION_GAMES = 1000;
+    private static final long PROGRESS_INTERVAL_MILLIS = 1000;
+    private static final int WIN_EXPONENT = 11;
+
+    private final NTupleNetwork network;
+    private final int threads;
+    private final long seed;
+    private final float learningRate;
+    private final AtomicLong nextGame = new AtomicLong();
+    private final LongAdder games = new LongAdder();
+    private final LongAdder moves = new LongAdder();
+    private final LongAdder totalScore = new LongAdder();
+    private final LongAdder wins = new LongAdder();
+    private double fourProbability = 0.0;
+
+    // learningRate is spread over the features, each of the 32 weights moves by learningRate / 32 of the error
+    public NTupleTrainer(NTupleNetwork network, int threads, long seed, float learningRate) {
+        this.network = network;
+        this.threads = threads;
+        this.seed = seed;
+        this.learningRate = learningRate / NTupleNetwork.FEATURE_COUNT;
+    }
+
+    public void setFourProbability(double fourProbability) {
+        this.fourProbability = fourProbability;
+    }
+
+    public long getGames() {
+        return games.sum();
+    }
+
+    public long getMoves() {
+        return moves.sum();
+    }
+
+    public long getTotalScore() {
+        return totalScore.sum();
+    }
+
+    public long getWins() {
+        return wins.sum();
+    }
+
+    // trains until gameCount games have been played, calling progress from this thread about once a second
+    public void train(long gameCount, Runnable progress) throws InterruptedException {
+        SplitMix64 root = new SplitMix64(seed);
+        List<Thread> workers = new ArrayList<>();
+        for (int i = 0; i < threads; i++) {
+            BitBoard board = new BitBoard(root.split());
+            board.setFourProbability(fourProbability);
+            workers.add(new Thread(() -> {
+                while (nextGame.getAndIncrement() < gameCount) {
+                    playAndLearn(board);
+                }
+            }, "ntuple-trainer-" + i));
+        }
+        for (Thread worker : workers) {
+            worker.start();
+        }
+        for (Thread worker : workers) {
+            while (worker.isAlive()) {
+                worker.join(PROGRESS_INTERVAL_MILLIS);
+                if (worker.isAlive()) {
+                    progress.run();
+                }
+            }
+        }
+    }
+
+    private void playAndLearn(BitBoard board) {
+        board.reset();
+        long previous = 0;
+        float previousValue = 0;
+        boolean started = false;
+        int moveCount = 0;
+        while (true) {
+            long cells = board.getCells();
+            int best = -1;
+            long bestAfter = 0;
+            float bestValue = 0;
+            float bestTotal = Float.NEGATIVE_INFINITY;
+            for (int direction = 0; direction < 4; direction++) {
+                long after = BitBoard.move(cells, direction);
+                if (after == cells) {
+                    continue;
+                }
+                float value = network.value(after);
+                float total = BitBoard.scoreOf(cells, direction) + value;
+                if (total > bestTotal) {
+                    best = direction;
+                    bestAfter = after;
+                    bestValue = value;
+                    bestTotal = total;
+                }
+            }
+            if (best == -1) {
+                break;
+            }
+            if (started) {
+                network.update(previous, learningRate * (bestTotal - previousValue));
+            }
+            previous = bestAfter;
+            previousValue = bestValue;
+            started = true;
+            board.move(best);
+            moveCount++;
+        }
+        if (started) {
+            network.update(previous, -learningRate * previousValue);
+        }
+        games.increment();
+        moves.add(moveCount);
+        totalScore.add(board.getScore());
+        if (BitBoard.maxExponent(board.getCells()) >= WIN_EXPONENT) {
+            wins.increment();
+        }
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        if (args.length < 2) {
+            System.err.println("Usage: NTupleTrainer <weights file | -> <games> [threads] [seed] [learning rate] [evaluation games]");
+            System.exit(1);
+        }
+        long gameCount = Long.parseLong(args[1]);
+        int threads = args.length > 2 ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+        long seed = args.length > 3 ? Long.parseLong(args[3]) : System.nanoTime();
+        float learningRate = args.length > 4 ? Float.parseFloat(args[4]) : DEFAULT_LEARNING_RATE;
+        int evaluationGames = args.length > 5 ? Integer.parseInt(args[5]) : DEFAULT_EVALUATION_GAMES;
+
+        long openStart = System.nanoTime();
+        try (NTupleNetwork network = args[0].equals("-") ? NTupleNetwork.inMemory() : NTupleNetwork.open(Path.of(args[0]), true)) {
+            System.out.printf("%d MB of weights ready in %.1f ms%n", network.getWeightBytes() >> 20, (System.nanoTime() - openStart) / 1e6);
+            NTupleTrainer trainer = new NTupleTrainer(network, threads, seed, learningRate);
+            long start = System.nanoTime();
+            long[] last = {start, 0, 0, 0};
+            trainer.train(gameCount, () -> {
+                // averages over the games finished since the previous line, so the numbers track the current policy
+                long now = System.nanoTime();
+                long games = trainer.getGames(), score = trainer.getTotalScore(), won = trainer.getWins();
+                long recent = Math.max(1, games - last[1]);
+                System.out.printf("%d games, %.0f games/s, recent average score %.0f, recent 2048 rate %.1f%%%n",
+                        games, (games - last[1]) * 1e9 / (now - last[0]), (double) (score - last[2]) / recent,
+                        100.0 * (won - last[3]) / recent);
+                last[0] = now;
+                last[1] = games;
+                last[2] = score;
+                last[3] = won;
+            });
+            double seconds = (System.nanoTime() - start) / 1e9;
+            System.out.printf("trained %d games (%d moves) in %.1f s on %d threads: %.0f games/s, %.0f moves/s, average score %.0f%n",
+                    trainer.getGames(), trainer.getMoves(), seconds, threads, trainer.getGames() / seconds,
+                    trainer.getMoves() / seconds, (double) trainer.getTotalScore() / Math.max(1, trainer.getGames()));
+
+            if (evaluationGames > 0) {
+                NTuplePlayer player = new NTuplePlayer(network);
+                Simulator.Result result = new Simulator(random -> player, threads, seed + 1).run(evaluationGames, progress -> {
+                });
+                System.out.print("greedy policy without learning: " + result);
+            }
+        }
+    }
+}
@@ -0,0 +1,428 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.IntConsumer;
+
+// Exact solution of a small board (2x2, 3x3): for every position, the move that maximises the
+// expected largest tile at game over, and that expectation. Tiles on an n-cell board never pass
+// 2^(n + 1), so a position is a base-(n + 2) number of cell exponents, index = sum of exponent(i) *
+// (n + 2)^i with i = y * size + x, and the table holds one int per index: 6^4 entries for 2x2, 11^9
+// (9.4 GB) for 3x3. Lookups hit the memory-mapped file directly, the table never enters the heap.
+//
+// Every move keeps the tile sum and every spawn adds 2 or 4, so all successors of a position have a
+// larger sum. Solving layer by layer from the largest sum down means successors are always solved
+// first; the positions of one layer are independent and are solved on a fork-join pool. The header
+// records the next layer to solve, written only after the layer before it is forced to disk, so an
+// interrupted build resumes where it stopped.
+//
+// File layout: long MAGIC, int VERSION, int size, double 4-spawn probability, int next layer sum (0
+// once complete), zero padding up to HEADER_BYTES, then the entries as big-endian ints. An entry is
+// the float expectation with its 3 low mantissa bits replaced by a code: 0 not solved, 1 + direction
+// for the best move, GAME_OVER when no move is left (the expectation is then the largest tile).
+public class OutcomeDatabase implements Closeable {
+    static final long MAGIC = 0x323034384F444200L; // "2048ODB\0"
+    static final int VERSION = 1;
+    private static final int HEADER_BYTES = 64;
+    private static final int NEXT_SUM_OFFSET = 24;
+    private static final int SEGMENT_BITS = 28;
+    private static final int SEGMENT_ENTRIES = 1 << SEGMENT_BITS;
+    private static final int GAME_OVER = 7;
+    private static final int CODE_MASK = 7;
+    private static final int MAX_SIZE = 3;
+
+    private final FileChannel channel;
+    private final MappedByteBuffer header;
+    private final MappedByteBuffer[] segments;
+    private final int size;
+    private final int cellCount;
+    private final int base;
+    private final int maxExponent;
+    private final long[] powers;
+    private final double fourProbability;
+
+    private OutcomeDatabase(FileChannel channel, boolean writable, int size, double fourProbability) throws IOException {
+        this.channel = channel;
+        this.size = size;
+        this.cellCount = size * size;
+        this.maxExponent = cellCount + 1;
+        this.base = maxExponent + 1;
+        this.fourProbability = fourProbability;
+        this.powers = new long[cellCount + 1];
+        powers[0] = 1;
+        for (int i = 1; i <= cellCount; i++) {
+            powers[i] = powers[i - 1] * base;
+        }
+        var mode = writable ? FileChannel.MapMode.READ_WRITE : FileChannel.MapMode.READ_ONLY;
+        header = channel.map(mode, 0, HEADER_BYTES);
+        long entries = powers[cellCount];
+        segments = new MappedByteBuffer[(int) ((entries + SEGMENT_ENTRIES - 1) >>> SEGMENT_BITS)];
+        for (int i = 0; i < segments.length; i++) {
+            long first = (long) i << SEGMENT_BITS;
+            // mapping past the end grows the file; unsolved entries read as zero
+            segments[i] = channel.map(mode, HEADER_BYTES + first * Integer.BYTES, Math.min(SEGMENT_ENTRIES, entries - first) * Integer.BYTES);
+        }
+    }
+
+    // opens a database for building, creating it if the file does not exist
+    public static OutcomeDatabase create(Path path, int size, double fourProbability) throws IOException {
+        if (size < 2 || size > MAX_SIZE) {
+            throw new IllegalArgumentException("Outcome databases cover 2x2 to " + MAX_SIZE + "x" + MAX_SIZE + " boards: " + size);
+        }
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            if (channel.size() == 0) {
+                var database = new OutcomeDatabase(channel, true, size, fourProbability);
+                database.header.putLong(0, MAGIC).putInt(8, VERSION).putInt(12, size).putDouble(16, fourProbability)
+                        .putInt(NEXT_SUM_OFFSET, database.getMaxSum());
+                database.header.force();
+                return database;
+            }
+            var database = open(channel, path, true);
+            if (database.size != size || database.fourProbability != fourProbability) {
+                throw new IOException(path + " holds a " + database.size + "x" + database.size
+                        + " database with 4-spawn probability " + database.fourProbability);
+            }
+            return database;
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    // opens a database read-only for lookups
+    public static OutcomeDatabase open(Path path) throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+        try {
+            return open(channel, path, false);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    private static OutcomeDatabase open(FileChannel channel, Path path, boolean writable) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+        channel.read(header, 0);
+        if (header.position() < HEADER_BYTES || header.getLong(0) != MAGIC) {
+            throw new IOException("Not an outcome database: " + path);
+        }
+        if (header.getInt(8) != VERSION) {
+            throw new IOException("Unsupported outcome database version " + header.getInt(8));
+        }
+        int size = header.getInt(12);
+        if (size < 2 || size > MAX_SIZE) {
+            throw new IOException("Unsupported outcome database board size " + size);
+        }
+        return new OutcomeDatabase(channel, writable, size, header.getDouble(16));
+    }
+
+    public int getSize() {
+        return size;
+    }
+
+    public double getFourProbability() {
+        return fourProbability;
+    }
+
+    public long getEntryCount() {
+        return powers[cellCount];
+    }
+
+    public boolean isComplete() {
+        return getNextSum() == 0;
+    }
+
+    private int getNextSum() {
+        return header.getInt(NEXT_SUM_OFFSET);
+    }
+
+    private int getMaxSum() {
+        return cellCount << maxExponent;
+    }
+
+    // best direction for the board, -1 when the game is over
+    public int getBestMove(Board board) {
+        int code = entry(board) & CODE_MASK;
+        return code == GAME_OVER ? -1 : code - 1;
+    }
+
+    // expected largest tile at game over when the rest of the game is played with getBestMove
+    public double getExpectedMaxTile(Board board) {
+        return value(entry(board));
+    }
+
+    private int entry(Board board) {
+        if (board.getSize() != size) {
+            throw new IllegalArgumentException("Database covers " + size + "x" + size + " boards, not " + board.getSize());
+        }
+        long index = 0;
+        for (int y = size - 1; y >= 0; y--) {
+            for (int x = size - 1; x >= 0; x--) {
+                int value = board.getValue(x, y);
+                index = index * base + (value == 0 ? 0 : Integer.numberOfTrailingZeros(value));
+            }
+        }
+        int entry = getEntry(index);
+        if ((entry & CODE_MASK) == 0) {
+            throw new IllegalStateException("Position not solved yet, the database is incomplete");
+        }
+        return entry;
+    }
+
+    // expected largest tile of a new game, averaged over where Board places its two starting 2s
+    public double getExpectedMaxTile() {
+        double total = 0;
+        int[] cells = new int[cellCount];
+        for (int first = 0; first < cellCount; first++) {
+            for (int second = first + 1; second < cellCount; second++) {
+                cells[first] = 1;
+                cells[second] = 1;
+                total += value(getEntry(index(cells)));
+                cells[first] = 0;
+                cells[second] = 0;
+            }
+        }
+        return total / (cellCount * (cellCount - 1) / 2);
+    }
+
+    private int getEntry(long index) {
+        return segments[(int) (index >>> SEGMENT_BITS)].getInt((int) (index & (SEGMENT_ENTRIES - 1)) << 2);
+    }
+
+    private void putEntry(long index, int entry) {
+        segments[(int) (index >>> SEGMENT_BITS)].putInt((int) (index & (SEGMENT_ENTRIES - 1)) << 2, entry);
+    }
+
+    private static float value(int entry) {
+        return Float.intBitsToFloat(entry & ~CODE_MASK);
+    }
+
+    private static int entry(double value, int code) {
+        return Float.floatToRawIntBits((float) value) & ~CODE_MASK | code;
+    }
+
+    private long index(int[] cells) {
+        long index = 0;
+        for (int i = 0; i < cellCount; i++) {
+            index += cells[i] * powers[i];
+        }
+        return index;
+    }
+
+    // solves the remaining layers, calling progress(sum of the finished layer) after each checkpoint
+    public void build(ForkJoinPool pool, IntConsumer progress) {
+        for (int sum = getNextSum(); sum > 0; sum -= 2) {
+            pool.invoke(new LayerTask(sum));
+            for (var segment : segments) {
+                segment.force();
+            }
+            header.putInt(NEXT_SUM_OFFSET, sum - 2);
+            header.force();
+            progress.accept(sum);
+        }
+    }
+
+    // all positions with the given tile sum; split on the first two cells, then enumerated serially
+    private final class LayerTask extends RecursiveAction {
+        private final int sum;
+
+        LayerTask(int sum) {
+            this.sum = sum;
+        }
+
+        @Override
+        protected void compute() {
+            List<PrefixTask> tasks = new ArrayList<>();
+            for (int a = 0; a <= maxExponent; a++) {
+                for (int b = 0; b <= maxExponent; b++) {
+                    int rest = sum - valueOf(a) - valueOf(b);
+                    if (rest >= 0 && rest <= (cellCount - 2) << maxExponent) {
+                        tasks.add(new PrefixTask(sum, a, b));
+                    }
+                }
+            }
+            invokeAll(tasks);
+        }
+    }
+
+    private final class PrefixTask extends RecursiveAction {
+        private final int[] cells = new int[cellCount];
+        private final int[] after = new int[cellCount];
+        private final int[] line = new int[MAX_SIZE];
+        private final int sum;
+
+        PrefixTask(int sum, int first, int second) {
+            this.sum = sum;
+            cells[0] = first;
+            cells[1] = second;
+        }
+
+        @Override
+        protected void compute() {
+            enumerate(2, sum - valueOf(cells[0]) - valueOf(cells[1]));
+        }
+
+        private void enumerate(int cell, int remaining) {
+            if (cell == cellCount) {
+                if (remaining == 0) {
+                    solve();
+                }
+                return;
+            }
+            if (remaining > (cellCount - cell) << maxExponent) {
+                return;
+            }
+            for (int exponent = 0; exponent <= maxExponent && valueOf(exponent) <= remaining; exponent++) {
+                cells[cell] = exponent;
+                enumerate(cell + 1, remaining - valueOf(exponent));
+            }
+            cells[cell] = 0;
+        }
+
+        private void solve() {
+            int best = -1;
+            double bestValue = 0;
+            for (int direction = 0; direction < 4; direction++) {
+                if (!move(direction)) {
+                    continue;
+                }
+                double value = expectation();
+                if (best == -1 || value > bestValue) {
+                    best = direction;
+                    bestValue = value;
+                }
+            }
+            if (best == -1) {
+                int max = 0;
+                for (int exponent : cells) {
+                    max = Math.max(max, exponent);
+                }
+                putEntry(index(cells), entry(valueOf(max), GAME_OVER));
+            } else {
+                putEntry(index(cells), entry(bestValue, best + 1));
+            }
+        }
+
+        // average over the spawns into the position after a move
+        private double expectation() {
+            long index = index(after);
+            int empty = 0;
+            double total = 0;
+            for (int i = 0; i < cellCount; i++) {
+                if (after[i] == 0) {
+                    empty++;
+                    total += (1 - fourProbability) * value(getEntry(index + powers[i]));
+                    if (fourProbability > 0) {
+                        total += fourProbability * value(getEntry(index + 2 * powers[i]));
+                    }
+                }
+            }
+            return total / empty;
+        }
+
+        // Board's rules on exponents: each tile merges at most once with the next equal tile towards
+        // the edge, then the line closes up. Returns false if nothing changes, or if a merge would
+        // pass the largest exponent (only possible from unreachable positions)
+        private boolean move(int direction) {
+            boolean vertical = direction == Board.UP || direction == Board.DOWN;
+            boolean reverse = direction == Board.DOWN || direction == Board.RIGHT;
+            boolean changed = false;
+            for (int l = 0; l < size; l++) {
+                int count = 0;
+                int target = -1;
+                for (int i = 0; i < size; i++) {
+                    int p = reverse ? size - 1 - i : i;
+                    int exponent = cells[vertical ? p * size + l : l * size + p];
+                    if (exponent == 0) {
+                        continue;
+                    }
+                    if (target != -1 && line[target] == exponent) {
+                        if (exponent == maxExponent) {
+                            return false;
+                        }
+                        line[target]++;
+                        target = -1;
+                    } else {
+                        line[count] = exponent;
+                        target = count++;
+                    }
+                }
+                for (int i = 0; i < size; i++) {
+                    int p = reverse ? size - 1 - i : i;
+                    int cell = vertical ? p * size + l : l * size + p;
+                    after[cell] = i < count ? line[i] : 0;
+                    changed |= after[cell] != cells[cell];
+                }
+            }
+            return changed;
+        }
+    }
+
+    private static int valueOf(int exponent) {
+        return exponent == 0 ? 0 : 1 << exponent;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    // Builds (or resumes) a database, then checks it against games played on Board.
+    // Usage: OutcomeDatabase <file> <size> [threads] [4-spawn probability] [check games]
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("Usage: OutcomeDatabase <file> <size> [threads] [4-spawn probability] [check games]");
+            System.exit(1);
+        }
+        Path path = Path.of(args[0]);
+        int size = Integer.parseInt(args[1]);
+        int threads = args.length > 2 ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+        double fourProbability = args.length > 3 ? Double.parseDouble(args[3]) : 0.0;
+        int checkGames = args.length > 4 ? Integer.parseInt(args[4]) : 10000;
+
+        try (OutcomeDatabase database = create(path, size, fourProbability)) {
+            long start = System.nanoTime();
+            int firstSum = database.getNextSum();
+            if (firstSum > 0) {
+                System.out.printf("solving %d entries (%d MB) from layer %d down%n", database.getEntryCount(),
+                        database.getEntryCount() * Integer.BYTES >> 20, firstSum);
+            }
+            var pool = new ForkJoinPool(threads);
+            long[] lastReport = {start};
+            database.build(pool, sum -> {
+                long now = System.nanoTime();
+                if (now - lastReport[0] > 1_000_000_000L || sum == 2) {
+                    System.out.printf("layer %d done, %.1f s%n", sum, (now - start) / 1e9);
+                    lastReport[0] = now;
+                }
+            });
+            pool.shutdown();
+            double seconds = (System.nanoTime() - start) / 1e9;
+            System.out.printf("%dx%d solved in %.1f s on %d threads, expected max tile of a new game %.3f%n",
+                    size, size, seconds, threads, database.getExpectedMaxTile());
+
+            SplitMix64 random = new SplitMix64(1);
+            double totalMax = 0;
+            for (int game = 0; game < checkGames; game++) {
+                Board board = new Board(size, random.split());
+                board.setFourProbability(fourProbability);
+                int direction;
+                while ((direction = database.getBestMove(board)) != -1) {
+                    board.move(direction);
+                }
+                totalMax += board.getMaxValue();
+            }
+            if (checkGames > 0) {
+                System.out.printf("%d games on Board following the table: average max tile %.3f%n", checkGames, totalMax / checkGames);
+            }
+        }
+    }
+}
@@ -0,0 +1,201 @@
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RecursiveTask;
+
+// Fork-join version of Board's merge and compaction passes for very large boards. The lines of a move
+// are split into fixed chunks. Each chunk writes only the cells of its own lines and keeps its score,
+// flags, dirty line bits and (when the board has listeners) events to itself. Board then reduces the
+// chunks in line order, so the result and the event order are the same as the sequential loop.
+final class ParallelMove {
+    private static final int LINES_PER_CHUNK = 32;
+    private static final int WORDS_PER_TASK = 1024;
+
+    private final int size;
+    private final Chunk[] chunks;
+
+    static final class Chunk {
+        final MoveResult events = new MoveResult();
+        final long[] dirtyRows;
+        final long[] dirtyCols;
+        int score;
+        int maxMerged;
+        boolean moved;
+        boolean merged;
+
+        Chunk(int size) {
+            dirtyRows = new long[(size + 63) >>> 6];
+            dirtyCols = new long[(size + 63) >>> 6];
+        }
+
+        private void reset(int direction) {
+            events.clear(direction);
+            Arrays.fill(dirtyRows, 0);
+            Arrays.fill(dirtyCols, 0);
+            score = 0;
+            maxMerged = 0;
+            moved = false;
+            merged = false;
+        }
+
+        private void markChanged(int x, int y) {
+            dirtyRows[y >>> 6] |= 1L << y;
+            dirtyCols[x >>> 6] |= 1L << x;
+        }
+    }
+
+    ParallelMove(int size) {
+        this.size = size;
+        this.chunks = new Chunk[(size + LINES_PER_CHUNK - 1) / LINES_PER_CHUNK];
+        for (int i = 0; i < chunks.length; i++) {
+            chunks[i] = new Chunk(size);
+        }
+    }
+
+    int getChunkCount() {
+        return chunks.length;
+    }
+
+    Chunk getChunk(int i) {
+        return chunks[i];
+    }
+
+    void execute(ForkJoinPool pool, int[] cells, int direction, boolean recordEvents) {
+        pool.invoke(new LineTask(cells, direction, recordEvents, 0, chunks.length));
+    }
+
+    // rebuilds the free-cell mask from the cells and returns the number of free cells
+    int rebuildFreeCells(ForkJoinPool pool, int[] cells, long[] freeCells) {
+        return pool.invoke(new FreeCellTask(cells, freeCells, 0, freeCells.length));
+    }
+
+    private final class LineTask extends RecursiveAction {
+        private final int[] cells;
+        private final int direction;
+        private final boolean recordEvents;
+        private final int fromChunk, toChunk;
+
+        LineTask(int[] cells, int direction, boolean recordEvents, int fromChunk, int toChunk) {
+            this.cells = cells;
+            this.direction = direction;
+            this.recordEvents = recordEvents;
+            this.fromChunk = fromChunk;
+            this.toChunk = toChunk;
+        }
+
+        @Override
+        protected void compute() {
+            if (toChunk - fromChunk > 1) {
+                int middle = (fromChunk + toChunk) >>> 1;
+                invokeAll(new LineTask(cells, direction, recordEvents, fromChunk, middle),
+                        new LineTask(cells, direction, recordEvents, middle, toChunk));
+                return;
+            }
+            Chunk chunk = chunks[fromChunk];
+            chunk.reset(direction);
+            boolean vertical = direction == Board.UP || direction == Board.DOWN;
+            boolean reverse = direction == Board.DOWN || direction == Board.RIGHT;
+            int end = Math.min(size, (fromChunk + 1) * LINES_PER_CHUNK);
+            for (int line = fromChunk * LINES_PER_CHUNK; line < end; line++) {
+                mergeLine(chunk, line, vertical, reverse);
+                compactLine(chunk, line, vertical, reverse);
+            }
+        }
+
+        // same rule as Board.performMergeOnRow/Col: a tile merges into the previous unmerged tile of equal value
+        private void mergeLine(Chunk chunk, int line, boolean vertical, boolean reverse) {
+            int target = -1;
+            int targetValue = 0;
+            for (int i = 0; i < size; i++) {
+                int p = reverse ? size - 1 - i : i;
+                int value = vertical ? cells[p * size + line] : cells[line * size + p];
+                if (value == 0) {
+                    continue;
+                }
+                if (target == -1 || targetValue != value) {
+                    target = p;
+                    targetValue = value;
+                    continue;
+                }
+                int mergedValue = targetValue + value;
+                int x = vertical ? line : p, y = vertical ? p : line;
+                int toX = vertical ? line : target, toY = vertical ? target : line;
+                cells[toY * size + toX] = mergedValue;
+                cells[y * size + x] = 0;
+                chunk.markChanged(toX, toY);
+                chunk.markChanged(x, y);
+                chunk.score += mergedValue;
+                chunk.maxMerged = Math.max(chunk.maxMerged, mergedValue);
+                chunk.merged = true;
+                if (recordEvents) {
+                    chunk.events.add(MoveResult.MERGED, x, y, toX, toY, mergedValue);
+                    chunk.events.addScore(mergedValue);
+                }
+                target = -1;
+            }
+        }
+
+        private void compactLine(Chunk chunk, int line, boolean vertical, boolean reverse) {
+            int to = 0;
+            for (int i = 0; i < size; i++) {
+                int p = reverse ? size - 1 - i : i;
+                int value = vertical ? cells[p * size + line] : cells[line * size + p];
+                if (value == 0) {
+                    continue;
+                }
+                if (i != to) {
+                    int q = reverse ? size - 1 - to : to;
+                    int x = vertical ? line : p, y = vertical ? p : line;
+                    int toX = vertical ? line : q, toY = vertical ? q : line;
+                    cells[toY * size + toX] = value;
+                    cells[y * size + x] = 0;
+                    chunk.markChanged(toX, toY);
+                    chunk.markChanged(x, y);
+                    chunk.moved = true;
+                    if (recordEvents) {
+                        chunk.events.add(MoveResult.MOVED, x, y, toX, toY, value);
+                    }
+                }
+                to++;
+            }
+        }
+    }
+
+    private final class FreeCellTask extends RecursiveTask<Integer> {
+        private final int[] cells;
+        private final long[] freeCells;
+        private final int fromWord, toWord;
+
+        FreeCellTask(int[] cells, long[] freeCells, int fromWord, int toWord) {
+            this.cells = cells;
+            this.freeCells = freeCells;
+            this.fromWord = fromWord;
+            this.toWord = toWord;
+        }
+
+        @Override
+        protected Integer compute() {
+            if (toWord - fromWord > WORDS_PER_TASK) {
+                int middle = (fromWord + toWord) >>> 1;
+                var right = new FreeCellTask(cells, freeCells, middle, toWord);
+                right.fork();
+                return new FreeCellTask(cells, freeCells, fromWord, middle).compute() + right.join();
+            }
+            int count = 0;
+            int cellCount = size * size;
+            for (int word = fromWord; word < toWord; word++) {
+                long bits = 0;
+                int index = word << 6;
+                int end = Math.min(cellCount, index + 64);
+                for (; index < end; index++) {
+                    if (cells[index] == 0) {
+                        bits |= 1L << index;
+                    }
+                }
+                freeCells[word] = bits;
+                count += Long.bitCount(bits);
+            }
+            return count;
+        }
+    }
+}
@@ -0,0 +1,213 @@
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+// Fixed-size cache of position evaluations keyed by a canonical position: a value is stored once for a
+// position and all of its rotations and reflections, so a search that reaches the same position in
+// another orientation finds it (up to 8x fewer evaluations for symmetric values). Keys are either a
+// canonical 4x4 BitBoard, see canonical(long), or Board.getCanonicalHash() for other sizes, a Zobrist
+// hash the board keeps up to date as its cells change.
+//
+// The table is open-addressed in buckets of BUCKET_SLOTS entries, two primitive longs per entry and
+// no objects. An entry keeps (key ^ data, data), so a torn write from a racing thread fails the key
+// check instead of returning a wrong value; the table is safe to share between threads without locks.
+// data packs the float value, a 16-bit generation and an 8-bit search depth. A full bucket replaces
+// its oldest entry, and among entries of the same generation the shallowest.
+public final class PositionCache {
+    public static final int BYTES_PER_ENTRY = 2 * Long.BYTES;
+    static final int SYMMETRIES = 8;
+    private static final int BUCKET_SLOTS = 4;
+    private static final long ZOBRIST_GAMMA = 0x9E3779B97F4A7C15L;
+
+    private final AtomicLongArray keys;
+    private final AtomicLongArray data;
+    private final int bucketMask;
+    private final LongAdder lookups = new LongAdder();
+    private final LongAdder hits = new LongAdder();
+    private volatile int generation = 1;
+
+    // 2^bits entries
+    public PositionCache(int bits) {
+        if (bits < 2 || bits > 30) {
+            throw new IllegalArgumentException("Cache size must be 2^2 to 2^30 entries: 2^" + bits);
+        }
+        keys = new AtomicLongArray(1 << bits);
+        data = new AtomicLongArray(1 << bits);
+        bucketMask = (1 << bits) - BUCKET_SLOTS;
+    }
+
+    private int bucket(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32)) & bucketMask;
+    }
+
+    // the cached value if it was searched at least depth deep, NaN otherwise
+    public float get(long key, int depth) {
+        lookups.increment();
+        int bucket = bucket(key);
+        for (int i = bucket; i < bucket + BUCKET_SLOTS; i++) {
+            long d = data.getPlain(i);
+            if (d != 0 && (keys.getPlain(i) ^ d) == key) {
+                if ((int) (d & 0xFF) < depth) {
+                    return Float.NaN;
+                }
+                hits.increment();
+                return Float.intBitsToFloat((int) (d >>> 32));
+            }
+        }
+        return Float.NaN;
+    }
+
+    public void put(long key, int depth, float value) {
+        int current = generation & 0xFFFF;
+        int bucket = bucket(key);
+        int victim = -1;
+        int victimAge = -1;
+        int victimDepth = Integer.MAX_VALUE;
+        for (int i = bucket; i < bucket + BUCKET_SLOTS; i++) {
+            long d = data.getPlain(i);
+            if (d == 0) {
+                if (victimAge < Integer.MAX_VALUE) {
+                    victim = i;
+                    victimAge = Integer.MAX_VALUE;
+                }
+                continue;
+            }
+            int age = (current - (int) ((d >>> 8) & 0xFFFF)) & 0xFFFF;
+            int storedDepth = (int) (d & 0xFF);
+            if ((keys.getPlain(i) ^ d) == key) {
+                // the same position: keep a deeper result from this generation
+                if (age == 0 && storedDepth > depth) {
+                    return;
+                }
+                victim = i;
+                break;
+            }
+            if (age > victimAge || age == victimAge && storedDepth < victimDepth) {
+                victim = i;
+                victimAge = age;
+                victimDepth = storedDepth;
+            }
+        }
+        long d = (long) Float.floatToRawIntBits(value) << 32 | (long) current << 8 | Math.min(depth, 0xFF);
+        data.setPlain(victim, d);
+        keys.setPlain(victim, key ^ d);
+    }
+
+    // starts a new search; entries of older generations are replaced first
+    public void nextGeneration() {
+        int next = generation + 1;
+        generation = (next & 0xFFFF) == 0 ? 1 : next;
+    }
+
+    public long getLookups() {
+        return lookups.sum();
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public double getHitRate() {
+        long total = lookups.sum();
+        return total == 0 ? 0.0 : (double) hits.sum() / total;
+    }
+
+    public void resetStatistics() {
+        lookups.reset();
+        hits.reset();
+    }
+
+    public int getCapacity() {
+        return keys.length();
+    }
+
+    public long getMemoryBytes() {
+        return (long) getCapacity() * BYTES_PER_ENTRY;
+    }
+
+    // the smallest of the 8 symmetric images of a 4x4 BitBoard position
+    public static long canonical(long cells) {
+        long min = cells;
+        for (int transposed = 0; transposed < 2; transposed++) {
+            long mirrored = mirrorRows(cells);
+            min = Math.min(Math.min(min, cells), Math.min(flipRows(cells), Math.min(mirrored, flipRows(mirrored))));
+            cells = BitBoard.transpose(cells);
+        }
+        return min;
+    }
+
+    // swaps the top and bottom rows, and the two middle ones
+    private static long flipRows(long cells) {
+        return cells << 48 | (cells & 0xFFFF0000L) << 16 | (cells >>> 16) & 0xFFFF0000L | cells >>> 48;
+    }
+
+    // reverses the cells of every row
+    private static long mirrorRows(long cells) {
+        return (cells & 0x000F000F000F000FL) << 12 | (cells & 0x00F000F000F000F0L) << 4
+                | (cells >>> 4) & 0x00F000F000F000F0L | (cells >>> 12) & 0x000F000F000F000FL;
+    }
+
+    // index of (x, y) after symmetry s: bit 0 mirrors x, bit 1 mirrors y, bit 2 transposes
+    static int symmetricIndex(int s, int x, int y, int size) {
+        int sx = (s & 1) != 0 ? size - 1 - x : x;
+        int sy = (s & 2) != 0 ? size - 1 - y : y;
+        return (s & 4) != 0 ? sx * size + sy : sy * size + sx;
+    }
+
+    // Zobrist key of a tile value on a cell index; empty cells hash to 0
+    static long zobrist(int index, int value) {
+        if (value == 0) {
+            return 0;
+        }
+        return SplitMix64.mix64(((long) index << 6 | Integer.numberOfTrailingZeros(value)) * ZOBRIST_GAMMA + ZOBRIST_GAMMA);
+    }
+
+    // applies one cell change to the hashes of all 8 symmetric images of a size x size position
+    static void updateHashes(long[] hashes, int size, int x, int y, int oldValue, int newValue) {
+        for (int s = 0; s < SYMMETRIES; s++) {
+            int index = symmetricIndex(s, x, y, size);
+            hashes[s] ^= zobrist(index, oldValue) ^ zobrist(index, newValue);
+        }
+    }
+
+    // Searches the positions of one game at a fixed expectimax depth with and without symmetric keys
+    // and compares the work. Usage: PositionCache [depth] [moves] [table bits] [seed]
+    public static void main(String[] args) {
+        int depth = args.length > 0 ? Integer.parseInt(args[0]) : 3;
+        int moves = args.length > 1 ? Integer.parseInt(args[1]) : 300;
+        int bits = args.length > 2 ? Integer.parseInt(args[2]) : 22;
+        long seed = args.length > 3 ? Long.parseLong(args[3]) : System.nanoTime();
+
+        var pool = new java.util.concurrent.ForkJoinPool(1);
+        var players = new ExpectimaxPlayer[2];
+        long[] nanos = new long[2];
+        for (int i = 0; i < players.length; i++) {
+            players[i] = new ExpectimaxPlayer(pool, 1_000_000_000L, depth, bits);
+            players[i].setSymmetricCache(i == 1);
+        }
+        BitBoard board = new BitBoard(new SplitMix64(seed));
+        int played = 0;
+        int direction = 0;
+        while (played < moves && direction != -1) {
+            for (int i = 0; i < players.length; i++) {
+                long start = System.nanoTime();
+                direction = players[i].chooseMove(board.getCells());
+                nanos[i] += System.nanoTime() - start;
+            }
+            if (direction != -1) {
+                board.move(direction);
+                played++;
+            }
+        }
+        System.out.printf("%d positions searched %d deep, %d entries of %d bytes (%d MB)%n", played, depth,
+                players[0].getCache().getCapacity(), BYTES_PER_ENTRY, players[0].getCache().getMemoryBytes() >> 20);
+        for (int i = 0; i < players.length; i++) {
+            PositionCache cache = players[i].getCache();
+            System.out.printf("%-10s %12d nodes, %10d lookups, hit rate %5.1f%%, %8.1f ms%n", i == 1 ? "symmetric" : "plain",
+                    players[i].getNodes(), cache.getLookups(), 100 * cache.getHitRate(), nanos[i] / 1e6);
+        }
+        System.out.printf("symmetric keys: %.2fx fewer nodes, %.2fx faster%n",
+                (double) players[0].getNodes() / players[1].getNodes(), (double) nanos[0] / nanos[1]);
+        pool.shutdown();
+    }
+}
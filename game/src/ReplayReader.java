@@ -0,0 +1,193 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+// Memory-mapped reader for files written by ReplayWriter. Opening scans the record lengths once to
+// index the games; after that any game, move or keyframe is found by offset arithmetic.
+public class ReplayReader implements Closeable {
+    private static final int SEGMENT_BITS = 30;
+    private static final long SEGMENT_SIZE = 1L << SEGMENT_BITS;
+
+    private final FileChannel channel;
+    private final MappedByteBuffer[] segments;
+    private final long length;
+    private long[] gameOffsets = new long[1024];
+    private int gameCount;
+
+    public ReplayReader(Path path) throws IOException {
+        channel = FileChannel.open(path, StandardOpenOption.READ);
+        length = channel.size();
+        segments = new MappedByteBuffer[(int) ((length + SEGMENT_SIZE - 1) >>> SEGMENT_BITS)];
+        for (int i = 0; i < segments.length; i++) {
+            long position = (long) i << SEGMENT_BITS;
+            segments[i] = channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(SEGMENT_SIZE, length - position));
+        }
+        if (length < 12 || getLong(0) != ReplayWriter.MAGIC) {
+            throw new IOException("Not a replay file: " + path);
+        }
+        if (getInt(8) != ReplayWriter.VERSION) {
+            throw new IOException("Unsupported replay version " + getInt(8));
+        }
+        long offset = 12;
+        while (offset + 4 <= length) {
+            int recordLength = getInt(offset);
+            if (offset + 4 + recordLength > length) {
+                break; // incomplete record from an interrupted writer
+            }
+            if (gameCount == gameOffsets.length) {
+                gameOffsets = Arrays.copyOf(gameOffsets, gameCount * 2);
+            }
+            gameOffsets[gameCount++] = offset + 4;
+            offset += 4 + recordLength;
+        }
+    }
+
+    public int getGameCount() {
+        return gameCount;
+    }
+
+    public int getSize(int game) {
+        return getByte(gameOffsets[game]);
+    }
+
+    private int getKeyframeInterval(int game) {
+        return getInt(gameOffsets[game] + 1);
+    }
+
+    public long getSeed(int game) {
+        return getLong(gameOffsets[game] + 5);
+    }
+
+    public double getFourProbability(int game) {
+        return Double.longBitsToDouble(getLong(gameOffsets[game] + 13));
+    }
+
+    public int getMoveCount(int game) {
+        return getInt(gameOffsets[game] + 21);
+    }
+
+    private int getKeyframeCount(int game) {
+        return getInt(gameOffsets[game] + 25);
+    }
+
+    private long keyframeOffset(int game, int keyframe) {
+        return gameOffsets[game] + ReplayWriter.GAME_HEADER_BYTES + (long) keyframe * ReplayWriter.keyframeSize(getSize(game));
+    }
+
+    public int getMove(int game, int move) {
+        long movesOffset = keyframeOffset(game, getKeyframeCount(game));
+        return (getByte(movesOffset + (move >>> 2)) >>> (2 * (move & 3))) & 3;
+    }
+
+    // a board in the starting position of the game, without listeners
+    public Board createBoard(int game) {
+        int size = getSize(game);
+        Board board = new Board(new int[size][size], new SplitMix64());
+        board.setFourProbability(getFourProbability(game));
+        loadKeyframe(board, game, 0);
+        return board;
+    }
+
+    // puts the board into the position before the given move: loads the nearest keyframe (which fires
+    // CellRestoredListener) and plays the remaining moves through the board and its listeners
+    public void seek(Board board, int game, int move) {
+        int keyframe = move / getKeyframeInterval(game);
+        board.setFourProbability(getFourProbability(game));
+        loadKeyframe(board, game, keyframe);
+        play(board, game, keyframe * getKeyframeInterval(game), move);
+    }
+
+    public void play(Board board, int game, int fromMove, int toMove) {
+        long movesOffset = keyframeOffset(game, getKeyframeCount(game));
+        for (int move = fromMove; move < toMove; move++) {
+            board.move((getByte(movesOffset + (move >>> 2)) >>> (2 * (move & 3))) & 3);
+        }
+    }
+
+    private void loadKeyframe(Board board, int game, int keyframe) {
+        int size = getSize(game);
+        if (board.getSize() != size) {
+            throw new IllegalArgumentException("Game " + game + " is played on a " + size + "x" + size + " board");
+        }
+        long offset = keyframeOffset(game, keyframe);
+        long randomState = getLong(offset);
+        int score = getInt(offset + 8);
+        int[] values = new int[size * size];
+        for (int i = 0; i < values.length; i++) {
+            int exponent = getByte(offset + 12 + i);
+            values[i] = exponent == 0 ? 0 : 1 << exponent;
+        }
+        board.restorePosition(values, score, randomState);
+    }
+
+    private int getByte(long position) {
+        return segments[(int) (position >>> SEGMENT_BITS)].get((int) (position & (SEGMENT_SIZE - 1))) & 0xFF;
+    }
+
+    private int getInt(long position) {
+        int index = (int) (position & (SEGMENT_SIZE - 1));
+        if (index + 4 <= SEGMENT_SIZE) {
+            return segments[(int) (position >>> SEGMENT_BITS)].getInt(index);
+        }
+        return getByte(position) << 24 | getByte(position + 1) << 16 | getByte(position + 2) << 8 | getByte(position + 3);
+    }
+
+    private long getLong(long position) {
+        int index = (int) (position & (SEGMENT_SIZE - 1));
+        if (index + 8 <= SEGMENT_SIZE) {
+            return segments[(int) (position >>> SEGMENT_BITS)].getLong(index);
+        }
+        return (long) getInt(position) << 32 | getInt(position + 4) & 0xFFFFFFFFL;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.err.println("Usage: ReplayReader <file> [--replay]");
+            System.exit(1);
+        }
+        boolean replay = args.length > 1 && args[1].equals("--replay");
+        try (ReplayReader reader = new ReplayReader(Path.of(args[0]))) {
+            long start = System.nanoTime();
+            long moves = 0;
+            long checksum = 0;
+            for (int game = 0; game < reader.getGameCount(); game++) {
+                int count = reader.getMoveCount(game);
+                for (int move = 0; move < count; move++) {
+                    checksum += reader.getMove(game, move);
+                }
+                moves += count;
+            }
+            double seconds = (System.nanoTime() - start) / 1e9;
+            System.out.printf("%d games, %d moves decoded in %.3f s: %.1f MB/s, %.0f moves/s (checksum %d)%n",
+                    reader.getGameCount(), moves, seconds, reader.length / seconds / 1e6, moves / seconds, checksum);
+
+            if (replay) {
+                start = System.nanoTime();
+                int mismatches = 0;
+                for (int game = 0; game < reader.getGameCount(); game++) {
+                    Board board = reader.createBoard(game);
+                    int count = reader.getMoveCount(game);
+                    reader.play(board, game, 0, count);
+                    Board expected = reader.createBoard(game);
+                    reader.seek(expected, game, count);
+                    if (!board.toStringWithoutFormatting().equals(expected.toStringWithoutFormatting())
+                            || board.getScore() != expected.getScore()) {
+                        mismatches++;
+                    }
+                }
+                seconds = (System.nanoTime() - start) / 1e9;
+                System.out.printf("replayed %d moves through Board in %.3f s: %.0f moves/s, %d mismatching games%n",
+                        moves, seconds, moves / seconds, mismatches);
+            }
+        }
+    }
+}
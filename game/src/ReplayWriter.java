@@ -0,0 +1,156 @@
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+// Append-only replay log. The file starts with MAGIC and VERSION, then holds one record per game:
+//
+//   int    record length (bytes after this field)
+//   byte   board size
+//   int    keyframe interval
+//   long   seed
+//   double 4-spawn probability
+//   int    move count
+//   int    keyframe count = move count / interval + 1
+//   keyframes, each: long generator state, int score, size * size exponent bytes
+//   moves, four 2-bit direction codes per byte, move i in bits 2 * (i % 4)
+//
+// Keyframe k is the position before move k * interval, so any move is one keyframe load plus at most
+// interval - 1 moves away.
+public class ReplayWriter implements Closeable {
+    static final long MAGIC = 0x3230343852504C00L; // "2048RPL\0"
+    static final int VERSION = 1;
+    static final int GAME_HEADER_BYTES = 1 + 4 + 8 + 8 + 4 + 4;
+    private static final int DEFAULT_KEYFRAME_INTERVAL = 256;
+
+    private final DataOutputStream out;
+    private final int keyframeInterval;
+
+    private Board board;
+    private long seed;
+    private int moveCount;
+    private byte[] moves = new byte[1024];
+    private byte[] keyframes = new byte[1024];
+    private int keyframeBytes;
+
+    public ReplayWriter(Path path) throws IOException {
+        this(path, DEFAULT_KEYFRAME_INTERVAL);
+    }
+
+    public ReplayWriter(Path path, int keyframeInterval) throws IOException {
+        boolean exists = Files.exists(path) && Files.size(path) > 0;
+        this.out = new DataOutputStream(new BufferedOutputStream(
+                Files.newOutputStream(path, StandardOpenOption.CREATE, StandardOpenOption.APPEND), 1 << 16));
+        this.keyframeInterval = keyframeInterval;
+        if (!exists) {
+            out.writeLong(MAGIC);
+            out.writeInt(VERSION);
+        }
+    }
+
+    static int keyframeSize(int size) {
+        return 8 + 4 + size * size;
+    }
+
+    // the board must be in its starting position, created from the given seed
+    public void beginGame(Board board, long seed) {
+        this.board = board;
+        this.seed = seed;
+        moveCount = 0;
+        keyframeBytes = 0;
+        writeKeyframe();
+    }
+
+    // call after board.move(direction)
+    public void recordMove(int direction) {
+        if ((moveCount >>> 2) == moves.length) {
+            moves = Arrays.copyOf(moves, moves.length * 2);
+        }
+        int shift = 2 * (moveCount & 3);
+        moves[moveCount >>> 2] = (byte) (shift == 0 ? direction : moves[moveCount >>> 2] | direction << shift);
+        moveCount++;
+        if (moveCount % keyframeInterval == 0) {
+            writeKeyframe();
+        }
+    }
+
+    public void endGame() throws IOException {
+        int moveBytes = (moveCount + 3) >>> 2;
+        out.writeInt(GAME_HEADER_BYTES + keyframeBytes + moveBytes);
+        out.writeByte(board.getSize());
+        out.writeInt(keyframeInterval);
+        out.writeLong(seed);
+        out.writeDouble(board.getFourProbability());
+        out.writeInt(moveCount);
+        out.writeInt(moveCount / keyframeInterval + 1);
+        out.write(keyframes, 0, keyframeBytes);
+        out.write(moves, 0, moveBytes);
+        board = null;
+    }
+
+    private void writeKeyframe() {
+        int size = board.getSize();
+        int needed = keyframeBytes + keyframeSize(size);
+        if (needed > keyframes.length) {
+            keyframes = Arrays.copyOf(keyframes, Math.max(needed, keyframes.length * 2));
+        }
+        long state = board.getRandom().getState();
+        for (int i = 0; i < 8; i++) {
+            keyframes[keyframeBytes++] = (byte) (state >>> (56 - 8 * i));
+        }
+        int score = board.getScore();
+        for (int i = 0; i < 4; i++) {
+            keyframes[keyframeBytes++] = (byte) (score >>> (24 - 8 * i));
+        }
+        for (int y = 0; y < size; y++) {
+            for (int x = 0; x < size; x++) {
+                int value = board.getValue(x, y);
+                keyframes[keyframeBytes++] = (byte) (value == 0 ? 0 : Integer.numberOfTrailingZeros(value));
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        out.close();
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("Usage: ReplayWriter <file> <games> [size] [seed]");
+            System.exit(1);
+        }
+        Path path = Path.of(args[0]);
+        int games = Integer.parseInt(args[1]);
+        int size = args.length > 2 ? Integer.parseInt(args[2]) : 4;
+        long seed = args.length > 3 ? Long.parseLong(args[3]) : System.nanoTime();
+
+        SplitMix64 moves = new SplitMix64(seed);
+        long start = System.nanoTime();
+        long totalMoves = 0;
+        try (ReplayWriter writer = new ReplayWriter(path)) {
+            for (int game = 0; game < games; game++) {
+                long gameSeed = seed + game;
+                Board board = new Board(size, gameSeed);
+                writer.beginGame(board, gameSeed);
+                while (!board.isGameOver()) {
+                    int legal = board.legalMoves();
+                    int direction = moves.nextInt(4);
+                    while ((legal & 1 << direction) == 0) {
+                        direction = (direction + 1) & 3;
+                    }
+                    board.move(direction);
+                    writer.recordMove(direction);
+                    totalMoves++;
+                }
+                writer.endGame();
+            }
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.out.printf("%d games, %d moves written in %.2f s, %d bytes%n", games, totalMoves, seconds, Files.size(path));
+    }
+}
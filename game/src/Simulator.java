@@ -0,0 +1,230 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+public class Simulator {
+    private static final int PUBLISH_INTERVAL = 256;
+    private static final long PROGRESS_INTERVAL_MILLIS = 1000;
+
+    // the single-thread search pool of each worker thread, shared by every strategy created on it
+    private static final ThreadLocal<ForkJoinPool> workerPool = new ThreadLocal<>();
+
+    private final Function<SplitMix64, Strategy> strategyFactory;
+    private final int threads;
+    private final long seed;
+
+    // per-worker counters; workers publish immutable copies so the reporting thread never reads live state
+    public static final class Result {
+        private long games;
+        private long moves;
+        private long totalScore;
+        private long nanos;
+        private final long[] maxTileCounts = new long[16];
+
+        private Result copy() {
+            Result copy = new Result();
+            copy.add(this);
+            return copy;
+        }
+
+        private void add(Result other) {
+            games += other.games;
+            moves += other.moves;
+            totalScore += other.totalScore;
+            nanos = Math.max(nanos, other.nanos);
+            for (int i = 0; i < maxTileCounts.length; i++) {
+                maxTileCounts[i] += other.maxTileCounts[i];
+            }
+        }
+
+        public long getGames() {
+            return games;
+        }
+
+        public long getMoves() {
+            return moves;
+        }
+
+        public double getAverageScore() {
+            return games == 0 ? 0.0 : (double) totalScore / games;
+        }
+
+        public double getAverageMoves() {
+            return games == 0 ? 0.0 : (double) moves / games;
+        }
+
+        public double getGamesPerSecond() {
+            return nanos == 0 ? 0.0 : games * 1e9 / nanos;
+        }
+
+        // number of games whose largest tile was 2^exponent
+        public long getMaxTileCount(int exponent) {
+            return maxTileCounts[exponent];
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder s = new StringBuilder();
+            s.append(String.format("%d games, %.1f games/s, average score %.1f, average moves %.1f%n",
+                    games, getGamesPerSecond(), getAverageScore(), getAverageMoves()));
+            for (int exponent = 1; exponent < maxTileCounts.length; exponent++) {
+                if (maxTileCounts[exponent] > 0) {
+                    s.append(String.format("%6d: %6.2f%%%n", 1 << exponent, 100.0 * maxTileCounts[exponent] / games));
+                }
+            }
+            return s.toString();
+        }
+    }
+
+    private final class Worker extends Thread {
+        private final long firstGame;
+        private final long games;
+        private final SplitMix64 random;
+        private final Result result = new Result();
+        private volatile Result published = new Result();
+
+        Worker(int index, long firstGame, long games, SplitMix64 random) {
+            super("simulator-" + index);
+            this.firstGame = firstGame;
+            this.games = games;
+            this.random = random;
+        }
+
+        @Override
+        public void run() {
+            try {
+                play();
+            } finally {
+                shutdownWorkerPool();
+            }
+        }
+
+        private void play() {
+            long start = System.nanoTime();
+            Strategy strategy = strategyFactory.apply(random.split());
+            BitBoard board = new BitBoard(random);
+            for (long game = firstGame; game < firstGame + games; game++) {
+                board.reset();
+                int direction;
+                long moves = 0;
+                while ((direction = strategy.chooseMove(board.getCells())) != -1 && board.move(direction)) {
+                    moves++;
+                }
+                result.games++;
+                result.moves += moves;
+                result.totalScore += board.getScore();
+                result.maxTileCounts[BitBoard.maxExponent(board.getCells())]++;
+                if (result.games % PUBLISH_INTERVAL == 0) {
+                    result.nanos = System.nanoTime() - start;
+                    published = result.copy();
+                }
+            }
+            result.nanos = System.nanoTime() - start;
+            published = result.copy();
+        }
+    }
+
+    public Simulator(Function<SplitMix64, Strategy> strategyFactory, int threads, long seed) {
+        this.strategyFactory = strategyFactory;
+        this.threads = threads;
+        this.seed = seed;
+    }
+
+    public Result run(long games, Consumer<Result> progress) throws InterruptedException {
+        SplitMix64 root = new SplitMix64(seed);
+        List<Worker> workers = new ArrayList<>();
+        long firstGame = 0;
+        for (int i = 0; i < threads; i++) {
+            long share = games / threads + (i < games % threads ? 1 : 0);
+            workers.add(new Worker(i, firstGame, share, root.split()));
+            firstGame += share;
+        }
+        for (Worker worker : workers) {
+            worker.start();
+        }
+        for (Worker worker : workers) {
+            while (worker.isAlive()) {
+                worker.join(PROGRESS_INTERVAL_MILLIS);
+                if (worker.isAlive()) {
+                    progress.accept(collect(workers));
+                }
+            }
+        }
+        return collect(workers);
+    }
+
+    private static Result collect(List<Worker> workers) {
+        Result total = new Result();
+        for (Worker worker : workers) {
+            total.add(worker.published);
+        }
+        return total;
+    }
+
+    static ForkJoinPool workerPool() {
+        ForkJoinPool pool = workerPool.get();
+        if (pool == null) {
+            pool = new ForkJoinPool(1);
+            workerPool.set(pool);
+        }
+        return pool;
+    }
+
+    // called by a worker thread once it has stopped using the strategies it created
+    static void shutdownWorkerPool() {
+        ForkJoinPool pool = workerPool.get();
+        if (pool != null) {
+            pool.shutdown();
+            workerPool.remove();
+        }
+    }
+
+    // the searching strategies run on the calling thread's workerPool, so each thread that creates
+    // one must call shutdownWorkerPool when it is done
+    static Function<SplitMix64, Strategy> strategyByName(String name) {
+        String[] parts = name.split(":");
+        return switch (parts[0]) {
+            case "random" -> Strategy::random;
+            case "corner" -> random -> Strategy.corner();
+            case "expectimax" -> {
+                long budgetMillis = parts.length > 1 ? Long.parseLong(parts[1]) : 1;
+                yield random -> new ExpectimaxPlayer(workerPool(), budgetMillis, 3, 16);
+            }
+            case "montecarlo" -> {
+                int playouts = parts.length > 1 ? Integer.parseInt(parts[1]) : 100;
+                yield random -> new MonteCarloPlayer(workerPool(), playouts, false, 0, random);
+            }
+            case "ntuple" -> {
+                // one read-only mapping of the weights file, shared by every worker
+                try {
+                    NTuplePlayer player = new NTuplePlayer(NTupleNetwork.open(Path.of(parts[1]), false));
+                    yield random -> player;
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+            default -> throw new IllegalArgumentException("Unknown strategy: " + name);
+        };
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        if (args.length < 2) {
+            System.err.println("Usage: Simulator <random|corner|expectimax[:millis]|montecarlo[:playouts]|ntuple:weights> <games> [threads] [seed]");
+            System.exit(1);
+        }
+        Function<SplitMix64, Strategy> strategy = strategyByName(args[0]);
+        long games = Long.parseLong(args[1]);
+        int threads = args.length > 2 ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+        long seed = args.length > 3 ? Long.parseLong(args[3]) : System.nanoTime();
+
+        Simulator simulator = new Simulator(strategy, threads, seed);
+        Result result = simulator.run(games, progress -> System.out.printf("%d games, %.1f games/s, average score %.1f%n",
+                progress.getGames(), progress.getGamesPerSecond(), progress.getAverageScore()));
+        System.out.print(result);
+    }
+}
@@ -0,0 +1,35 @@
+public interface Strategy {
+    // returns one of Board.UP/DOWN/LEFT/RIGHT that changes the position, or -1 when there is none
+    int chooseMove(long cells);
+
+    // strategies that handle other board sizes override this; the default packs a 4x4 board
+    default int chooseMove(Board board) {
+        return chooseMove(BitBoard.pack(board));
+    }
+
+    static Strategy random(SplitMix64 random) {
+        return cells -> {
+            int legal = BitBoard.legalMoves(cells);
+            if (legal == 0) {
+                return -1;
+            }
+            for (int skip = random.nextInt(Integer.bitCount(legal)); skip > 0; skip--) {
+                legal &= legal - 1;
+            }
+            return Integer.numberOfTrailingZeros(legal);
+        };
+    }
+
+    static Strategy corner() {
+        int[] order = {Board.DOWN, Board.LEFT, Board.RIGHT, Board.UP};
+        return cells -> {
+            int legal = BitBoard.legalMoves(cells);
+            for (int direction : order) {
+                if ((legal & 1 << direction) != 0) {
+                    return direction;
+                }
+            }
+            return -1;
+        };
+    }
+}
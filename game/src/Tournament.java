@@ -0,0 +1,238 @@
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+
+// Plays several strategies over the same seeded games: game g of every strategy starts from a board
+// seeded with gameSeed(g), so the starting position and the spawn generator are shared. Work is handed
+// out as (game, strategy) pairs in game order, so all strategies advance together on any number of
+// threads. Each finished game is written to the CSV output at once; only running statistics per
+// strategy stay in memory.
+//
+// Usage: Tournament <strategy,strategy,...> <games> [threads] [seed] [csv file] [board size]
+// Strategy names are those of Simulator; the CSV columns are CSV_HEADER.
+public class Tournament {
+    static final String CSV_HEADER = "strategy,game,seed,score,max_tile,moves,nanos";
+    private static final long PROGRESS_INTERVAL_MILLIS = 1000;
+    private static final int WIN_VALUE = 2048;
+
+    private final List<String> names;
+    private final List<Function<SplitMix64, Strategy>> factories;
+    private final int size;
+    private final int threads;
+    private final long seed;
+    private final Stats[] stats;
+    private final AtomicLong nextGame = new AtomicLong();
+    private final AtomicReference<Throwable> failure = new AtomicReference<>();
+    private Writer csv;
+
+    // running mean and variance of the score by Welford's method, plus totals for the other columns
+    public static final class Stats {
+        private long games;
+        private double mean;
+        private double m2;
+        private long moves;
+        private long wins;
+        private long nanos;
+
+        private synchronized void add(int score, int maxValue, long gameMoves, long gameNanos) {
+            games++;
+            double delta = score - mean;
+            mean += delta / games;
+            m2 += delta * (score - mean);
+            moves += gameMoves;
+            wins += maxValue >= WIN_VALUE ? 1 : 0;
+            nanos += gameNanos;
+        }
+
+        public synchronized long getGames() {
+            return games;
+        }
+
+        public synchronized double getMeanScore() {
+            return mean;
+        }
+
+        public synchronized double getScoreStandardDeviation() {
+            return games < 2 ? 0.0 : Math.sqrt(m2 / (games - 1));
+        }
+
+        // half width of the normal-approximation 95% confidence interval of the mean score
+        public synchronized double getScoreConfidence95() {
+            return games < 2 ? Double.NaN : 1.96 * getScoreStandardDeviation() / Math.sqrt(games);
+        }
+
+        public synchronized double getAverageMoves() {
+            return games == 0 ? 0.0 : (double) moves / games;
+        }
+
+        public synchronized double getWinRate() {
+            return games == 0 ? 0.0 : (double) wins / games;
+        }
+
+        // games per second of one thread playing only this strategy
+        public synchronized double getGamesPerSecond() {
+            return nanos == 0 ? 0.0 : games * 1e9 / nanos;
+        }
+    }
+
+    public Tournament(List<String> names, List<Function<SplitMix64, Strategy>> factories, int size, int threads, long seed) {
+        this.names = names;
+        this.factories = factories;
+        this.size = size;
+        this.threads = threads;
+        this.seed = seed;
+        this.stats = new Stats[names.size()];
+        for (int i = 0; i < stats.length; i++) {
+            stats[i] = new Stats();
+        }
+    }
+
+    public Stats getStats(int strategy) {
+        return stats[strategy];
+    }
+
+    public long getGamesPlayed() {
+        long games = 0;
+        for (Stats s : stats) {
+            games += s.getGames();
+        }
+        return games;
+    }
+
+    public long gameSeed(long game) {
+        return new SplitMix64(seed + game * 0x9E3779B97F4A7C15L).nextLong();
+    }
+
+    // plays gameCount games per strategy; csv may be null, progress runs on this thread about once a second
+    public void run(long gameCount, Writer csv, Runnable progress) throws IOException, InterruptedException {
+        this.csv = csv;
+        if (csv != null) {
+            csv.write(CSV_HEADER + "\n");
+        }
+        long pairs = gameCount * names.size();
+        SplitMix64 root = new SplitMix64(seed);
+        List<Thread> workers = new ArrayList<>();
+        for (int i = 0; i < threads; i++) {
+            SplitMix64 random = root.split();
+            workers.add(new Thread(() -> {
+                // strategies are created per thread on first use, so stateful players are never shared
+                var strategies = new Strategy[names.size()];
+                long pair;
+                try {
+                    while (failure.get() == null && (pair = nextGame.getAndIncrement()) < pairs) {
+                        int s = (int) (pair % names.size());
+                        if (strategies[s] == null) {
+                            strategies[s] = factories.get(s).apply(random.split());
+                        }
+                        try {
+                            play(s, strategies[s], pair / names.size());
+                        } catch (Throwable t) {
+                            failure.compareAndSet(null, t);
+                        }
+                    }
+                } finally {
+                    Simulator.shutdownWorkerPool();
+                }
+            }, "tournament-" + i));
+        }
+        for (Thread worker : workers) {
+            worker.start();
+        }
+        for (Thread worker : workers) {
+            while (worker.isAlive()) {
+                worker.join(PROGRESS_INTERVAL_MILLIS);
+                if (worker.isAlive()) {
+                    flush();
+                    progress.run();
+                }
+            }
+        }
+        flush();
+        Throwable t = failure.get();
+        if (t instanceof IOException e) {
+            throw e;
+        } else if (t instanceof RuntimeException e) {
+            throw e;
+        } else if (t instanceof Error e) {
+            throw e;
+        }
+    }
+
+    private void play(int strategyIndex, Strategy strategy, long game) throws IOException {
+        long gameSeed = gameSeed(game);
+        long start = System.nanoTime();
+        Board board = new Board(size, new SplitMix64(gameSeed));
+        int moves = 0;
+        int direction;
+        while ((direction = strategy.chooseMove(board)) != -1 && board.isLegalMove(direction)) {
+            board.move(direction);
+            moves++;
+        }
+        long nanos = System.nanoTime() - start;
+        stats[strategyIndex].add(board.getScore(), board.getMaxValue(), moves, nanos);
+        if (csv != null) {
+            String line = names.get(strategyIndex) + ',' + game + ',' + gameSeed + ',' + board.getScore() + ','
+                    + board.getMaxValue() + ',' + moves + ',' + nanos + '\n';
+            synchronized (this) {
+                csv.write(line);
+            }
+        }
+    }
+
+    private synchronized void flush() throws IOException {
+        if (csv != null) {
+            csv.flush();
+        }
+    }
+
+    public String summary() {
+        var s = new StringBuilder();
+        s.append(String.format("%-20s %8s %22s %10s %10s %8s %12s%n",
+                "strategy", "games", "mean score (95% CI)", "sd", "moves", "2048", "games/s/thr"));
+        for (int i = 0; i < names.size(); i++) {
+            Stats st = stats[i];
+            s.append(String.format("%-20s %8d %12.1f +- %-6.1f %10.1f %10.1f %7.1f%% %12.1f%n",
+                    names.get(i), st.getGames(), st.getMeanScore(), st.getScoreConfidence95(), st.getScoreStandardDeviation(),
+                    st.getAverageMoves(), 100 * st.getWinRate(), st.getGamesPerSecond()));
+        }
+        return s.toString();
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        if (args.length < 2) {
+            System.err.println("Usage: Tournament <strategy,strategy,...> <games> [threads] [seed] [csv file] [board size]");
+            System.exit(1);
+        }
+        List<String> names = List.of(args[0].split(","));
+        List<Function<SplitMix64, Strategy>> factories = new ArrayList<>();
+        for (String name : names) {
+            factories.add(Simulator.strategyByName(name));
+        }
+        long games = Long.parseLong(args[1]);
+        int threads = args.length > 2 ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+        long seed = args.length > 3 ? Long.parseLong(args[3]) : System.nanoTime();
+        Path csvPath = args.length > 4 ? Path.of(args[4]) : null;
+        int size = args.length > 5 ? Integer.parseInt(args[5]) : BitBoard.SIZE;
+
+        Tournament tournament = new Tournament(names, factories, size, threads, seed);
+        long start = System.nanoTime();
+        try (BufferedWriter csv = csvPath == null ? null : Files.newBufferedWriter(csvPath)) {
+            tournament.run(games, csv, () -> {
+                long played = tournament.getGamesPlayed();
+                System.out.printf("%d of %d games, %.1f games/s%n", played, games * names.size(),
+                        played * 1e9 / (System.nanoTime() - start));
+            });
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.out.print(tournament.summary());
+        System.out.printf("%d games in %.1f s on %d threads: %.1f games/s, seed %d%n",
+                tournament.getGamesPlayed(), seconds, threads, tournament.getGamesPlayed() / seconds, seed);
+    }
+}